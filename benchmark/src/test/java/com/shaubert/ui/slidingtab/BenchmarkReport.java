@@ -0,0 +1,137 @@
+package com.shaubert.ui.slidingtab;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Measures time and allocations per operation and writes results as JSON to
+ * {@code <benchmark.resultsDir>/<name>.json}:
+ * <pre>
+ * {"benchmarks": [{"name": "...", "iterations": 100, "nsPerOp": 1234.5, "bytesPerOp": 256.0}], "sink": 0}
+ * </pre>
+ * Allocations are measured with {@code com.sun.management.ThreadMXBean}, {@code bytesPerOp} is -1
+ * on JVMs without it.
+ */
+class BenchmarkReport {
+
+    static final int DEFAULT_WARMUP_ITERATIONS = 50;
+    static final int DEFAULT_ITERATIONS = 200;
+
+    private final String mName;
+    private final List<Result> mResults = new ArrayList<>();
+    private long mSink;
+
+    BenchmarkReport(String name) {
+        mName = name;
+    }
+
+    /**
+     * Runs {@code operation} {@code warmupIterations} times and then measures
+     * {@code iterations} runs.
+     */
+    Result measure(String name, int warmupIterations, int iterations, Runnable operation) {
+        for (int i = 0; i < warmupIterations; i++) {
+            operation.run();
+        }
+
+        long startBytes = getAllocatedBytes();
+        long startTime = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            operation.run();
+        }
+        long time = System.nanoTime() - startTime;
+        long endBytes = getAllocatedBytes();
+
+        Result result = new Result(name, iterations, (double) time / iterations,
+                startBytes >= 0 && endBytes >= 0 ? (double) (endBytes - startBytes) / iterations : -1);
+        mResults.add(result);
+        System.out.println(result);
+        return result;
+    }
+
+    Result measure(String name, Runnable operation) {
+        return measure(name, DEFAULT_WARMUP_ITERATIONS, DEFAULT_ITERATIONS, operation);
+    }
+
+    /**
+     * Sets a value accumulated from results of benchmarked operations. It's written along with
+     * results, so JIT can't drop the computations.
+     */
+    void setSink(long sink) {
+        mSink = sink;
+    }
+
+    /**
+     * Writes results to the directory from {@code benchmark.resultsDir} system property, if it's set.
+     */
+    void write() throws IOException {
+        String resultsDir = System.getProperty("benchmark.resultsDir");
+        if (resultsDir == null) {
+            return;
+        }
+
+        File dir = new File(resultsDir);
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Failed to create " + dir);
+        }
+        File file = new File(dir, mName + ".json");
+
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write("{\"benchmarks\": [\n");
+            for (int i = 0; i < mResults.size(); i++) {
+                Result result = mResults.get(i);
+                writer.write(String.format(Locale.US,
+                        "  {\"name\": \"%s\", \"iterations\": %d, \"nsPerOp\": %.1f, \"bytesPerOp\": %.1f}%s\n",
+                        result.name, result.iterations, result.nsPerOp, result.bytesPerOp,
+                        i < mResults.size() - 1 ? "," : ""));
+            }
+            writer.write(String.format(Locale.US, "], \"sink\": %d}\n", mSink));
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * @return bytes allocated by the current thread so far or -1 if it's not supported by the JVM
+     */
+    static long getAllocatedBytes() {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunThreadMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+            if (sunThreadMXBean.isThreadAllocatedMemorySupported()
+                    && sunThreadMXBean.isThreadAllocatedMemoryEnabled()) {
+                return sunThreadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    static class Result {
+        final String name;
+        final int iterations;
+        final double nsPerOp;
+        final double bytesPerOp;
+
+        Result(String name, int iterations, double nsPerOp, double bytesPerOp) {
+            this.name = name;
+            this.iterations = iterations;
+            this.nsPerOp = nsPerOp;
+            this.bytesPerOp = bytesPerOp;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s: %.0f ns/op, %.0f bytes/op", name, nsPerOp, bytesPerOp);
+        }
+    }
+
+}
@@ -0,0 +1,129 @@
+package com.shaubert.ui.slidingtab;
+
+import android.app.Activity;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.support.v4.view.PagerAdapter;
+import android.support.v4.view.ViewPager;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.LinearLayout;
+import com.shaubert.ui.slidingtab.benchmark.BuildConfig;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Checks that a page scroll frame, from applying pager scroll to the indicator and tabs scroll to
+ * drawing the layout, doesn't allocate.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class PageScrollAllocationTest {
+
+    private static final int WIDTH = 1080;
+    private static final int TABS_HEIGHT = 144;
+    private static final int PAGES = 50;
+    private static final int STEPS = 20;
+
+    private SlidingTabLayout tabLayout;
+    private Canvas canvas;
+
+    @Before
+    public void setUp() {
+        assumeTrue("Allocation counting isn't supported by the JVM", BenchmarkReport.getAllocatedBytes() >= 0);
+
+        Activity activity = Robolectric.buildActivity(Activity.class).create().start().resume().visible().get();
+        LinearLayout root = new LinearLayout(activity);
+        root.setOrientation(LinearLayout.VERTICAL);
+        tabLayout = new SlidingTabLayout(activity);
+        root.addView(tabLayout, new LinearLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, TABS_HEIGHT));
+        ViewPager viewPager = new ViewPager(activity);
+        root.addView(viewPager, new LinearLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, 0, 1));
+        activity.setContentView(root);
+
+        viewPager.setAdapter(new TitlesAdapter());
+        tabLayout.setViewPager(viewPager);
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+        tabLayout.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(TABS_HEIGHT, View.MeasureSpec.EXACTLY));
+        tabLayout.layout(0, 0, WIDTH, TABS_HEIGHT);
+        canvas = new Canvas(Bitmap.createBitmap(WIDTH, TABS_HEIGHT, Bitmap.Config.ARGB_8888));
+    }
+
+    @Test
+    public void pageScrollFrameDoesNotAllocate() {
+        assertSweepDoesNotAllocate();
+    }
+
+    @Test
+    public void pageScrollFrameWithCustomColorsDoesNotAllocate() {
+        tabLayout.setSelectedIndicatorColors(0xffff0000, 0xff0000ff, 0xff00ff00);
+        tabLayout.setDividerColors(0xff888888, 0xff444444);
+        assertSweepDoesNotAllocate();
+    }
+
+    @Test
+    public void pageScrollFrameWithIndicatorViewDoesNotAllocate() {
+        tabLayout.setIndicatorViewEnabled(true);
+        assertSweepDoesNotAllocate();
+    }
+
+    private void assertSweepDoesNotAllocate() {
+        // Warm up lazily initialized state, like gradient tables, divider buckets and draw caches
+        sweep();
+        sweep();
+
+        long startBytes = BenchmarkReport.getAllocatedBytes();
+        sweep();
+        long allocatedBytes = BenchmarkReport.getAllocatedBytes() - startBytes;
+
+        assertEquals("Bytes allocated by " + (PAGES - 1) * STEPS + " page scroll frames", 0, allocatedBytes);
+    }
+
+    private void sweep() {
+        for (int position = 0; position < PAGES - 1; position++) {
+            for (int step = 0; step < STEPS; step++) {
+                tabLayout.applyPageScroll(position, (float) step / STEPS);
+                tabLayout.draw(canvas);
+            }
+        }
+    }
+
+    private static class TitlesAdapter extends PagerAdapter {
+        @Override
+        public int getCount() {
+            return PAGES;
+        }
+
+        @Override
+        public CharSequence getPageTitle(int position) {
+            return "Page " + position;
+        }
+
+        @Override
+        public Object instantiateItem(ViewGroup container, int position) {
+            View view = new View(container.getContext());
+            container.addView(view);
+            return view;
+        }
+
+        @Override
+        public void destroyItem(ViewGroup container, int position, Object object) {
+            container.removeView((View) object);
+        }
+
+        @Override
+        public boolean isViewFromObject(View view, Object object) {
+            return view == object;
+        }
+    }
+
+}
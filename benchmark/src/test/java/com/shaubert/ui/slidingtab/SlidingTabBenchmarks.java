@@ -0,0 +1,212 @@
+package com.shaubert.ui.slidingtab;
+
+import android.app.Activity;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.support.v4.view.PagerAdapter;
+import android.support.v4.view.ViewPager;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.LinearLayout;
+import com.shaubert.ui.slidingtab.benchmark.BuildConfig;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.IOException;
+
+/**
+ * Benchmarks of adapter updates, measure, draw and page scrolling.
+ * <p>
+ * Robolectric canvas doesn't rasterize anything, so draw benchmarks measure only the work done by
+ * the library in {@code onDraw}.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class SlidingTabBenchmarks {
+
+    private static final int WIDTH = 1080;
+    private static final int TABS_HEIGHT = 144;
+
+    private static final BenchmarkReport REPORT = new BenchmarkReport("SlidingTabBenchmarks");
+
+    private Activity activity;
+    private SlidingTabLayout tabLayout;
+    private BenchmarkViewPager viewPager;
+    private TitlesAdapter adapter;
+
+    @Before
+    public void setUp() {
+        activity = Robolectric.buildActivity(Activity.class).create().start().resume().visible().get();
+
+        LinearLayout root = new LinearLayout(activity);
+        root.setOrientation(LinearLayout.VERTICAL);
+        tabLayout = new SlidingTabLayout(activity);
+        root.addView(tabLayout, new LinearLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, TABS_HEIGHT));
+        viewPager = new BenchmarkViewPager(activity);
+        root.addView(viewPager, new LinearLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, 0, 1));
+        activity.setContentView(root);
+    }
+
+    @AfterClass
+    public static void writeResults() throws IOException {
+        REPORT.write();
+    }
+
+    @Test
+    public void notifyDataSetChanged() {
+        for (final int pages : new int[] {10, 100, 1000}) {
+            setUpPager(pages);
+            REPORT.measure("notifyDataSetChanged/pages=" + pages, new Runnable() {
+                int version;
+
+                @Override
+                public void run() {
+                    adapter.setTitlesVersion(++version);
+                    adapter.notifyDataSetChanged();
+                }
+            });
+        }
+    }
+
+    @Test
+    public void measure() {
+        setUpPager(100);
+        for (final SlidingTabLayout.StretchOption stretchOption : SlidingTabLayout.StretchOption.values()) {
+            tabLayout.setStretchOption(stretchOption);
+            REPORT.measure("onMeasure/stretch=" + stretchOption.name(), new Runnable() {
+                @Override
+                public void run() {
+                    tabLayout.forceLayout();
+                    getTabStrip().forceLayout();
+                    measureAndLayout();
+                }
+            });
+        }
+    }
+
+    @Test
+    public void draw() {
+        setUpPager(100);
+        measureAndLayout();
+        final Canvas canvas = new Canvas(Bitmap.createBitmap(WIDTH, TABS_HEIGHT, Bitmap.Config.ARGB_8888));
+        Runnable draw = new Runnable() {
+            @Override
+            public void run() {
+                tabLayout.draw(canvas);
+            }
+        };
+
+        REPORT.measure("onDraw/colorizer=default", draw);
+
+        tabLayout.setCustomTabColorizer(new SlidingTabLayout.TabColorizer() {
+            @Override
+            public int getIndicatorColor(int position) {
+                return position % 2 == 0 ? Color.RED : Color.BLUE;
+            }
+
+            @Override
+            public int getDividerColor(int position) {
+                return position % 3 == 0 ? Color.GRAY : Color.LTGRAY;
+            }
+        });
+        REPORT.measure("onDraw/colorizer=custom", draw);
+    }
+
+    @Test
+    public void pageScrollSweep() {
+        final int pages = 100;
+        final int steps = 20;
+        setUpPager(pages);
+        measureAndLayout();
+        REPORT.measure("onPageScrolled/sweep", 5, 20, new Runnable() {
+            @Override
+            public void run() {
+                for (int position = 0; position < pages - 1; position++) {
+                    for (int step = 0; step < steps; step++) {
+                        viewPager.dispatchPageScrolled(position, (float) step / steps);
+                        // Scroll updates are applied on the next frame
+                        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+                    }
+                }
+            }
+        });
+    }
+
+    private void setUpPager(int pages) {
+        tabLayout.setViewPager(null);
+        adapter = new TitlesAdapter(pages);
+        viewPager.setAdapter(adapter);
+        tabLayout.setViewPager(viewPager);
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+    }
+
+    private void measureAndLayout() {
+        tabLayout.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(TABS_HEIGHT, View.MeasureSpec.EXACTLY));
+        tabLayout.layout(0, 0, WIDTH, TABS_HEIGHT);
+    }
+
+    private View getTabStrip() {
+        return tabLayout.getChildAt(0);
+    }
+
+    private static class TitlesAdapter extends PagerAdapter {
+        private final int count;
+        private int titlesVersion;
+
+        TitlesAdapter(int count) {
+            this.count = count;
+        }
+
+        void setTitlesVersion(int titlesVersion) {
+            this.titlesVersion = titlesVersion;
+        }
+
+        @Override
+        public int getCount() {
+            return count;
+        }
+
+        @Override
+        public CharSequence getPageTitle(int position) {
+            // Every tenth title changes with each version
+            return "Page " + position + (position % 10 == 0 ? " v" + titlesVersion : "");
+        }
+
+        @Override
+        public Object instantiateItem(ViewGroup container, int position) {
+            View view = new View(container.getContext());
+            container.addView(view);
+            return view;
+        }
+
+        @Override
+        public void destroyItem(ViewGroup container, int position, Object object) {
+            container.removeView((View) object);
+        }
+
+        @Override
+        public boolean isViewFromObject(View view, Object object) {
+            return view == object;
+        }
+    }
+
+    private static class BenchmarkViewPager extends ViewPager {
+        BenchmarkViewPager(Context context) {
+            super(context);
+        }
+
+        void dispatchPageScrolled(int position, float offset) {
+            onPageScrolled(position, offset, (int) (offset * getWidth()));
+        }
+    }
+
+}
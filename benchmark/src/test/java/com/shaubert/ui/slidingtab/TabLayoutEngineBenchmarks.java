@@ -0,0 +1,103 @@
+package com.shaubert.ui.slidingtab;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Benchmarks of {@link TabLayoutEngine} on plain JVM with randomized tab widths.
+ */
+public class TabLayoutEngineBenchmarks {
+
+    private static final BenchmarkReport REPORT = new BenchmarkReport("TabLayoutEngineBenchmarks");
+
+    private static final int TABS_COUNT = 1000;
+    private static final int AVAILABLE_WIDTH = 1080;
+
+    // Results are accumulated here, so JIT can't drop computations
+    private static int sink;
+
+    @AfterClass
+    public static void writeResults() throws IOException {
+        REPORT.setSink(sink);
+        REPORT.write();
+    }
+
+    @Test
+    public void computeTabBounds() {
+        final int[] widths = randomWidths(new Random(42), TABS_COUNT);
+        final int[] lefts = new int[TABS_COUNT];
+        final int[] rights = new int[TABS_COUNT];
+        String[] names = {"IF_LESS_THAN_3", "IF_POSSIBLE", "ALWAYS", "NONE"};
+        int[] stretches = {
+                TabLayoutEngine.STRETCH_IF_LESS_THAN_3,
+                TabLayoutEngine.STRETCH_IF_POSSIBLE,
+                TabLayoutEngine.STRETCH_ALWAYS,
+                TabLayoutEngine.STRETCH_NONE,
+        };
+        for (int i = 0; i < stretches.length; i++) {
+            final int stretch = stretches[i];
+            REPORT.measure("engine.computeTabBounds/tabs=" + TABS_COUNT + "/stretch=" + names[i], 1000, 10000,
+                    new Runnable() {
+                        @Override
+                        public void run() {
+                            sink += TabLayoutEngine.computeTabBounds(widths, TABS_COUNT, 96, stretch,
+                                    AVAILABLE_WIDTH, 0, lefts, rights);
+                        }
+                    });
+        }
+    }
+
+    @Test
+    public void computeIndicatorSweep() {
+        final int[] widths = randomWidths(new Random(43), TABS_COUNT);
+        final int[] lefts = new int[TABS_COUNT];
+        final int[] rights = new int[TABS_COUNT];
+        TabLayoutEngine.computeTabBounds(widths, TABS_COUNT, 96, TabLayoutEngine.STRETCH_NONE,
+                AVAILABLE_WIDTH, 0, lefts, rights);
+        final TabLayoutEngine.Indicator indicator = new TabLayoutEngine.Indicator();
+        REPORT.measure("engine.computeIndicator/sweep", 10, 100, new Runnable() {
+            @Override
+            public void run() {
+                for (int position = 0; position < TABS_COUNT - 1; position++) {
+                    for (int step = 0; step < 20; step++) {
+                        TabLayoutEngine.computeIndicator(lefts, rights, TABS_COUNT, position, step / 20f, indicator);
+                        sink += indicator.right - indicator.left;
+                    }
+                }
+            }
+        });
+    }
+
+    @Test
+    public void blendColors() {
+        final Random random = new Random(44);
+        final int[] colors = new int[1024];
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = random.nextInt();
+        }
+        final int[] gradient = new int[65];
+        REPORT.measure("engine.fillGradient/steps=64", 1000, 10000, new Runnable() {
+            int index;
+
+            @Override
+            public void run() {
+                index = (index + 1) % (colors.length - 1);
+                TabLayoutEngine.fillGradient(colors[index], colors[index + 1], gradient);
+                sink += gradient[32];
+            }
+        });
+    }
+
+    private static int[] randomWidths(Random random, int count) {
+        int[] widths = new int[count];
+        for (int i = 0; i < count; i++) {
+            // Some widths are unknown and have to be estimated
+            widths[i] = random.nextInt(10) == 0 ? 0 : 48 + random.nextInt(400);
+        }
+        return widths;
+    }
+
+}
@@ -0,0 +1,167 @@
+package com.shaubert.ui.slidingtab;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+import java.util.ArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Inflates custom tab views on a background thread ahead of time. Views are requested with
+ * {@link #prewarm(int)}, delivered to the main thread and handed out with {@link #poll()}. If a
+ * layout fails to inflate in background it's inflated on the main thread instead.
+ * <p>
+ * {@link LayoutInflater} isn't thread safe, so background inflation of all instances is done one
+ * by one on a single thread with an inflater used only there, and the main thread has its own one.
+ * <p>
+ * All methods must be called on the main thread.
+ */
+class AsyncTabViewInflater {
+
+    private static final String TAG = "AsyncTabViewInflater";
+
+    interface OnTabViewsInflatedListener {
+        void onTabViewsInflated();
+    }
+
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+    private static final Executor INFLATION_EXECUTOR = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, TAG);
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    // Used only on INFLATION_EXECUTOR thread
+    private final LayoutInflater mBackgroundInflater;
+    private final LayoutInflater mInflater;
+    private final ViewGroup mParent;
+    private final OnTabViewsInflatedListener mListener;
+
+    private final ArrayList<View> mInflatedViews = new ArrayList<>();
+    private int mLayoutId;
+    // Incremented on layout change, so views inflated for previous layout are dropped
+    private int mGeneration;
+    private int mInflatingCount;
+    private int mRequestedCount;
+
+    private final Runnable mStartInflationRunnable = new Runnable() {
+        @Override
+        public void run() {
+            startInflation();
+        }
+    };
+
+    AsyncTabViewInflater(Context context, ViewGroup parent, OnTabViewsInflatedListener listener) {
+        mBackgroundInflater = LayoutInflater.from(context).cloneInContext(context);
+        mInflater = LayoutInflater.from(context);
+        mParent = parent;
+        mListener = listener;
+    }
+
+    /**
+     * Sets the layout to inflate, views inflated for another layout are dropped.
+     */
+    void setLayoutId(int layoutId) {
+        if (mLayoutId != layoutId) {
+            mLayoutId = layoutId;
+            clear();
+        }
+    }
+
+    /**
+     * Drops all inflated views and cancels pending requests.
+     */
+    void clear() {
+        mGeneration++;
+        mInflatedViews.clear();
+        mInflatingCount = 0;
+        mRequestedCount = 0;
+        MAIN_HANDLER.removeCallbacks(mStartInflationRunnable);
+    }
+
+    /**
+     * @return inflated view or null if there is no one ready
+     */
+    View poll() {
+        return mInflatedViews.isEmpty() ? null : mInflatedViews.remove(mInflatedViews.size() - 1);
+    }
+
+    /**
+     * Makes sure that at least {@code count} views are inflated or being inflated.
+     */
+    void prewarm(int count) {
+        request(count - mInflatedViews.size() - mInflatingCount - mRequestedCount);
+    }
+
+    /**
+     * Requests {@code count} more views. Requests made within one message of the main thread are
+     * inflated in a single background task.
+     */
+    private void request(int count) {
+        if (count <= 0 || mLayoutId == 0) {
+            return;
+        }
+
+        if (mRequestedCount == 0) {
+            MAIN_HANDLER.post(mStartInflationRunnable);
+        }
+        mRequestedCount += count;
+    }
+
+    private void startInflation() {
+        final int count = mRequestedCount;
+        final int layoutId = mLayoutId;
+        final int generation = mGeneration;
+        mRequestedCount = 0;
+        mInflatingCount += count;
+
+        INFLATION_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < count; i++) {
+                    View view;
+                    try {
+                        view = mBackgroundInflater.inflate(layoutId, mParent, false);
+                    } catch (RuntimeException ex) {
+                        Log.w(TAG, "Failed to inflate tab view in background, inflating on the main thread", ex);
+                        view = null;
+                    }
+                    deliver(view, layoutId, generation);
+                }
+            }
+        });
+    }
+
+    private void deliver(final View view, final int layoutId, final int generation) {
+        MAIN_HANDLER.post(new Runnable() {
+            @Override
+            public void run() {
+                if (generation != mGeneration) {
+                    return;
+                }
+
+                mInflatingCount--;
+                mInflatedViews.add(view != null ? view : mInflater.inflate(layoutId, mParent, false));
+                mListener.onTabViewsInflated();
+            }
+        });
+    }
+
+}
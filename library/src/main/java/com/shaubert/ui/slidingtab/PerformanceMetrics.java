@@ -0,0 +1,185 @@
+package com.shaubert.ui.slidingtab;
+
+/**
+ * Counters and timings of {@link SlidingTabLayout} work, aggregated since the performance
+ * listener was set or since {@link #reset()}. Set with
+ * {@link SlidingTabLayout#setPerformanceListener(SlidingTabLayout.PerformanceListener)}.
+ * <p>
+ * The same instance is updated and passed to the listener every time, so values should be copied
+ * if they are needed after the listener call. Updates don't allocate.
+ */
+public final class PerformanceMetrics {
+
+    interface OnChangedListener {
+        void onMetricsChanged();
+    }
+
+    private final OnChangedListener mOnChangedListener;
+    private boolean mChanged;
+
+    private long mMeasurePasses;
+    private long mDoubleMeasures;
+    private long mTabInflations;
+    private long mTabReuses;
+    private long mTitlesRebound;
+    private long mDraws;
+    private long mDrawTimeNanos;
+    private long mMaxDrawTimeNanos;
+    private long mPageScrollCallbacks;
+    private long mScrollFrames;
+    private int mMaxScrollCallbacksPerFrame;
+
+    private int mScrollCallbacksInFrame;
+
+    PerformanceMetrics(OnChangedListener onChangedListener) {
+        mOnChangedListener = onChangedListener;
+    }
+
+    /**
+     * @return number of tab strip measure passes
+     */
+    public long getMeasurePasses() {
+        return mMeasurePasses;
+    }
+
+    /**
+     * @return number of tab strip measure passes which weren't followed by layout before the next
+     * measure pass
+     */
+    public long getDoubleMeasures() {
+        return mDoubleMeasures;
+    }
+
+    /**
+     * @return number of tab views inflated or created
+     */
+    public long getTabInflations() {
+        return mTabInflations;
+    }
+
+    /**
+     * @return number of tab views reused from recycled views or {@link TabViewPool}
+     */
+    public long getTabReuses() {
+        return mTabReuses;
+    }
+
+    /**
+     * @return number of titles bound to tab views
+     */
+    public long getTitlesRebound() {
+        return mTitlesRebound;
+    }
+
+    /**
+     * @return number of tab strip draws
+     */
+    public long getDraws() {
+        return mDraws;
+    }
+
+    /**
+     * @return total time of tab strip draws in nanoseconds
+     */
+    public long getDrawTimeNanos() {
+        return mDrawTimeNanos;
+    }
+
+    public long getMaxDrawTimeNanos() {
+        return mMaxDrawTimeNanos;
+    }
+
+    /**
+     * @return number of {@code onPageScrolled} and {@code onPageSelected} callbacks of the view pager
+     */
+    public long getPageScrollCallbacks() {
+        return mPageScrollCallbacks;
+    }
+
+    /**
+     * @return number of frames in which pager scroll has been applied
+     */
+    public long getScrollFrames() {
+        return mScrollFrames;
+    }
+
+    /**
+     * @return maximal number of pager scroll callbacks coalesced into one frame
+     */
+    public int getMaxScrollCallbacksPerFrame() {
+        return mMaxScrollCallbacksPerFrame;
+    }
+
+    public void reset() {
+        mMeasurePasses = 0;
+        mDoubleMeasures = 0;
+        mTabInflations = 0;
+        mTabReuses = 0;
+        mTitlesRebound = 0;
+        mDraws = 0;
+        mDrawTimeNanos = 0;
+        mMaxDrawTimeNanos = 0;
+        mPageScrollCallbacks = 0;
+        mScrollFrames = 0;
+        mMaxScrollCallbacksPerFrame = 0;
+        mScrollCallbacksInFrame = 0;
+    }
+
+    void onMeasurePass(boolean doubleMeasure) {
+        mMeasurePasses++;
+        if (doubleMeasure) {
+            mDoubleMeasures++;
+        }
+        onChanged();
+    }
+
+    void onTabInflated() {
+        mTabInflations++;
+        onChanged();
+    }
+
+    void onTabReused() {
+        mTabReuses++;
+        onChanged();
+    }
+
+    void onTitleRebound() {
+        mTitlesRebound++;
+        onChanged();
+    }
+
+    void onDraw(long timeNanos) {
+        mDraws++;
+        mDrawTimeNanos += timeNanos;
+        mMaxDrawTimeNanos = Math.max(mMaxDrawTimeNanos, timeNanos);
+        onChanged();
+    }
+
+    void onPageScrollCallback() {
+        mPageScrollCallbacks++;
+        mScrollCallbacksInFrame++;
+        onChanged();
+    }
+
+    void onScrollFrame() {
+        mScrollFrames++;
+        mMaxScrollCallbacksPerFrame = Math.max(mMaxScrollCallbacksPerFrame, mScrollCallbacksInFrame);
+        mScrollCallbacksInFrame = 0;
+        onChanged();
+    }
+
+    /**
+     * Marks metrics as reported, next change will notify the listener again.
+     */
+    void onReported() {
+        mChanged = false;
+    }
+
+    private void onChanged() {
+        if (!mChanged) {
+            mChanged = true;
+            mOnChangedListener.onMetricsChanged();
+        }
+    }
+
+}
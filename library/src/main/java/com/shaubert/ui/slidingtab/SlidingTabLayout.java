@@ -16,19 +16,33 @@
 
 package com.shaubert.ui.slidingtab;
 
+import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
+import android.animation.ValueAnimator;
 import android.annotation.SuppressLint;
+import android.app.Activity;
 import android.content.Context;
+import android.content.ContextWrapper;
+import android.content.res.Configuration;
 import android.database.DataSetObserver;
+import android.graphics.Canvas;
 import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Parcel;
+import android.os.Parcelable;
 import android.support.v4.view.PagerAdapter;
+import android.support.v4.view.ViewCompat;
 import android.support.v4.view.ViewPager;
 import android.text.TextUtils;
 import android.util.AttributeSet;
-import android.util.TypedValue;
 import android.view.*;
 import android.widget.HorizontalScrollView;
 import android.widget.TextView;
 
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+
 /**
  * To be used with ViewPager to provide a tab indicator component which give constant feedback as to
  * the user's scroll progress.
@@ -44,6 +58,20 @@ import android.widget.TextView;
  * <p>
  * The views used as tabs can be customized by calling {@link #setCustomTabView(int, int)},
  * providing the layout ID of your custom layout.
+ * <p>
+ * Tabs are updated incrementally: on adapter changes only tabs with changed titles are rebound,
+ * inserted or removed. If you know which titles have changed you can call
+ * {@link #notifyTabChanged(int)} or {@link #notifyTabRangeChanged(int, int)} instead of
+ * {@link PagerAdapter#notifyDataSetChanged()}.
+ * <p>
+ * For adapters with a lot of pages call {@link #setTabRecyclingEnabled(boolean)}. In this mode only
+ * tabs intersecting the visible area are bound to views, and those views are reused when tabs go
+ * offscreen. Default tabs can also be drawn without any views, see
+ * {@link #setDrawnTabsEnabled(boolean)}.
+ * <p>
+ * The layout follows adapter changes of the view pager and listens to the view pager and its
+ * adapter only while attached to a window. Tab views are released after the layout has been
+ * detached for {@link #RELEASE_DETACHED_TABS_DELAY_MS}, or right away if its activity is finishing.
  */
 public class SlidingTabLayout extends HorizontalScrollView {
 
@@ -73,11 +101,21 @@ public class SlidingTabLayout extends HorizontalScrollView {
     }
 
     private static final int TITLE_OFFSET_DIPS = 24;
-    private static final int TAB_VIEW_PADDING_HORIZ_DIPS = 12;
-    private static final int TAB_VIEW_PADDING_VERT_DIPS = 8;
 
     private static final int DEFAULT_HEIGHT_DP = 12;
 
+    private static final int INDICATOR_JUMP_DURATION_MS = 300;
+
+    /**
+     * Time after which tab views of a detached layout are released.
+     */
+    public static final long RELEASE_DETACHED_TABS_DELAY_MS = 30000;
+
+    // Number of tabs added per frame by lazy binding after the first frame
+    private static final int LAZY_BIND_CHUNK_SIZE = 8;
+
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+
     private int mTitleOffset;
 
     private int mTabViewLayoutId;
@@ -85,25 +123,141 @@ public class SlidingTabLayout extends HorizontalScrollView {
 
     private ViewPager mViewPager;
     private InternalViewPagerListener viewPagerListener;
+    // Adapter the observer is registered on, the view pager adapter can be swapped after that
+    private PagerAdapter boundAdapter;
+    private boolean viewPagerConnected;
+    private final ViewTreeObserver.OnGlobalLayoutListener adapterChangeListener =
+            new ViewTreeObserver.OnGlobalLayoutListener() {
+                @Override
+                public void onGlobalLayout() {
+                    // ViewPager.setAdapter() always leads to layout of the pager
+                    checkAdapterChanged();
+                }
+            };
+    private final Runnable releaseDetachedTabsRunnable = new ReleaseDetachedTabsRunnable(this);
+    // Adapter changes aren't observed while detached, tabs are updated on attach only if they were
+    // released, loaded titles weren't applied, or adapter or its count differs from these
+    private boolean tabsUpdateOnAttach;
+    private PagerAdapter detachedAdapter;
+    private int detachedAdapterCount;
 
     private StretchOption stretchOption = StretchOption.IF_LESS_THAN_3;
 
     private TabClickCallback tabClickCallback;
-    private final OnClickListener tabClickListener = new TabClickListener();
+    private final TabClickListener tabClickListener = new TabClickListener();
+    private boolean drawnTabsEnabled;
+    private boolean dragLayerEnabled;
+    private int smoothScrollMaxDistance = Integer.MAX_VALUE;
+    // Animates the indicator to the clicked tab when the pager jumps to it without animation
+    private ValueAnimator indicatorJumpAnimator;
+    private boolean indicatorJumpCancelled;
+    private AsyncTabViewInflater asyncTabViewInflater;
+    private TabViewPool tabViewPool;
+    private PerformanceListener performanceListener;
+    private PerformanceMetrics performanceMetrics;
+    private final Runnable reportMetricsRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (performanceListener != null && performanceMetrics != null) {
+                performanceMetrics.onReported();
+                performanceListener.onPerformanceMetrics(performanceMetrics);
+            }
+        }
+    };
+
+    // First pager scroll of a frame is applied right away, the following ones are coalesced and
+    // applied by scrollFrameRunnable on the next frame. scrollFramePosted is set while the frame
+    // in which scroll has been applied lasts
+    private int pendingScrollPosition;
+    private float pendingScrollOffset;
+    private boolean scrollPending;
+    private boolean scrollFramePosted;
+    private final Runnable scrollFrameRunnable = new Runnable() {
+        @Override
+        public void run() {
+            scrollFramePosted = false;
+            if (scrollPending) {
+                scrollPending = false;
+                applyScrollFrame(pendingScrollPosition, pendingScrollOffset);
+            }
+        }
+    };
+    private TabTitleProvider tabTitleProvider;
+    // Titles of pages [0, providedTitleCount) supplied by tabTitleProvider, titles which haven't
+    // been loaded yet are pending. Loaded titles are kept until the reloaded ones come
+    private CharSequence[] providedTitles = new CharSequence[0];
+    private boolean[] providedTitlesPending = new boolean[0];
+    // Sequence numbers of requests whose titles are in providedTitles, so a late delivery doesn't
+    // overwrite titles of a newer one
+    private int[] providedTitleSequences = new int[0];
+    private int providedTitleCount;
+    // Titles of pages before requestedTitleCount have been requested since the last adapter change
+    private int requestedTitleCount;
+    private int titlesRequestSequence;
+    // Incremented when titles of another provider or pager are requested, deliveries of previous
+    // generations are dropped
+    private int titlesGeneration;
+    private boolean updatingTabs;
+    private boolean applyTitlesPosted;
+    private final Runnable applyTitlesRunnable = new Runnable() {
+        @Override
+        public void run() {
+            applyTitlesPosted = false;
+            if (mViewPager != null && !tabsUpdatePending) {
+                notifyDataSetChanged();
+            }
+        }
+    };
+    private boolean lazyTabBindingEnabled;
+    // Tabs are updated on the next measure in lazy binding mode
+    private boolean tabsUpdatePending;
+    // Number of adapter pages shown as tabs, limited while lazy binding adds tabs in chunks
+    private int tabBindLimit = Integer.MAX_VALUE;
+    private boolean bindChunkPosted;
+    private final Runnable bindChunkRunnable = new Runnable() {
+        @Override
+        public void run() {
+            bindChunkPosted = false;
+            bindNextChunk();
+        }
+    };
+    // Scroll of tabs from saved state, applied on the first layout with tabs if the current page
+    // and the width of the layout are the same as they were
+    private int restoredScrollX = -1;
+    private int restoredSelectedPosition = -1;
+    private int restoredViewportWidth;
+    private boolean scrollOnLayoutPending;
+    private final ViewTreeObserver.OnGlobalLayoutListener scrollOnLayoutListener =
+            new ViewTreeObserver.OnGlobalLayoutListener() {
+                @Override
+                public void onGlobalLayout() {
+                    removeScrollOnLayoutListener();
+                    if (mViewPager != null) {
+                        scrollToTab(mViewPager.getCurrentItem(), 0);
+                    }
+                }
+            };
+
     private DataSetObserver observer = new DataSetObserver() {
         @Override
         public void onChanged() {
-            notifyDataSetChanged();
+            invalidateProvidedTitles();
+            requestTabsUpdate();
         }
 
         @Override
         public void onInvalidated() {
-            notifyDataSetChanged();
+            invalidateProvidedTitles();
+            requestTabsUpdate();
         }
     };
 
     private final SlidingTabStrip mTabStrip;
 
+    // Titles of tabs which are currently in the strip
+    private CharSequence[] tabTitles = new CharSequence[0];
+    private CharSequence[] newTabTitles = new CharSequence[0];
+
     public SlidingTabLayout(Context context) {
         this(context, null);
     }
@@ -123,6 +277,9 @@ public class SlidingTabLayout extends HorizontalScrollView {
         mTitleOffset = (int) (TITLE_OFFSET_DIPS * getResources().getDisplayMetrics().density);
 
         mTabStrip = new SlidingTabStrip(context);
+        mTabStrip.setTabViewBinder(new InternalTabViewBinder());
+        mTabStrip.setOnTabClickListener(tabClickListener);
+        mTabStrip.setTabAppearanceKey(SlidingTabLayoutStyle.getSlidingTabTextAppearance(context), false);
         addView(mTabStrip, LayoutParams.MATCH_PARENT, LayoutParams.MATCH_PARENT);
     }
 
@@ -153,10 +310,69 @@ public class SlidingTabLayout extends HorizontalScrollView {
         mTabStrip.setDividerColors(colors);
     }
 
+    /**
+     * Shows {@code count} in a badge at the top right corner of the tab at {@code position},
+     * 0 hides the badge. Counts greater than 99 are shown as "99+". Badges are drawn by the tab
+     * strip in slots of fixed size, so changing a count doesn't measure or layout tabs and
+     * redraws only the badge. Badges are bound to positions, not pages, so they should be
+     * updated if pages are moved.
+     */
+    public void setTabBadge(int position, int count) {
+        mTabStrip.setTabBadge(position, count);
+    }
+
+    public int getTabBadge(int position) {
+        return mTabStrip.getTabBadge(position);
+    }
+
+    public void clearTabBadges() {
+        mTabStrip.clearTabBadges();
+    }
+
+    /**
+     * Sets colors of badges, see {@link #setTabBadge(int, int)}. By default the background is
+     * the color of the tab strip and the text is white.
+     */
+    public void setTabBadgeColors(int backgroundColor, int textColor) {
+        mTabStrip.setTabBadgeColors(backgroundColor, textColor);
+    }
+
     public void setTabClickCallback(TabClickCallback tabClickCallback) {
         this.tabClickCallback = tabClickCallback;
     }
 
+    /**
+     * Enables trace sections around notifying of adapter changes, creation of tabs, measure passes,
+     * drawing and scrolling of tabs, and counters of tab count and {@link TabViewPool} size
+     * (counters are supported on API 29 and higher). Disabled by default.
+     */
+    public static void setTracingEnabled(boolean tracingEnabled) {
+        Tracing.setEnabled(tracingEnabled);
+    }
+
+    public static boolean isTracingEnabled() {
+        return Tracing.isEnabled();
+    }
+
+    /**
+     * Sets the listener of performance metrics. Metrics are collected only while the listener is
+     * set and reported at most once per frame, only if they have been changed.
+     */
+    public void setPerformanceListener(PerformanceListener performanceListener) {
+        this.performanceListener = performanceListener;
+        if (performanceListener == null) {
+            performanceMetrics = null;
+        } else if (performanceMetrics == null) {
+            performanceMetrics = new PerformanceMetrics(new PerformanceMetrics.OnChangedListener() {
+                @Override
+                public void onMetricsChanged() {
+                    ViewCompat.postOnAnimation(SlidingTabLayout.this, reportMetricsRunnable);
+                }
+            });
+        }
+        mTabStrip.setPerformanceMetrics(performanceMetrics);
+    }
+
     public void setStretchOption(StretchOption stretchOption) {
         if (this.stretchOption != stretchOption) {
             this.stretchOption = stretchOption;
@@ -168,6 +384,224 @@ public class SlidingTabLayout extends HorizontalScrollView {
         return stretchOption;
     }
 
+    /**
+     * Enables or disables tab recycling. When enabled only tabs intersecting the visible area
+     * (extended by {@link #setTabRecyclingMargin(int)}) have views, widths of other tabs are tracked
+     * as numbers. Views of tabs which go offscreen are rebound to tabs which become visible.
+     * Disabled by default.
+     */
+    public void setTabRecyclingEnabled(boolean tabRecyclingEnabled) {
+        if (mTabStrip.isRecyclingEnabled() != tabRecyclingEnabled) {
+            mTabStrip.setRecyclingEnabled(tabRecyclingEnabled);
+            if (mViewPager != null) {
+                requestTabsUpdate();
+            }
+        }
+    }
+
+    public boolean isTabRecyclingEnabled() {
+        return mTabStrip.isRecyclingEnabled();
+    }
+
+    /**
+     * Enables drawing of default tabs by the tab strip itself, without a view per tab. Titles are
+     * drawn with the paint of a default tab, and clicks are resolved from tab bounds. Such tabs
+     * have no pressed state feedback and ignore spans in titles. Drawn tabs are exposed to
+     * accessibility services as virtual views.
+     * Has no effect while custom tab view is set with {@link #setCustomTabView(int, int)}.
+     * Disabled by default.
+     */
+    public void setDrawnTabsEnabled(boolean drawnTabsEnabled) {
+        if (this.drawnTabsEnabled != drawnTabsEnabled) {
+            this.drawnTabsEnabled = drawnTabsEnabled;
+            boolean enabled = drawnTabsEnabled && mTabViewLayoutId == 0;
+            if (mTabStrip.isDrawnTabsEnabled() != enabled) {
+                mTabStrip.setDrawnTabsEnabled(enabled);
+                if (mViewPager != null) {
+                    requestTabsUpdate();
+                }
+            }
+        }
+    }
+
+    public boolean isDrawnTabsEnabled() {
+        return drawnTabsEnabled;
+    }
+
+    /**
+     * Enables drawing of the selection indicator by a separate child view. While the pager is
+     * scrolled the view is only moved and stretched with {@code translationX} and {@code scaleX},
+     * so tabs and dividers aren't redrawn every frame. The indicator is drawn over tabs in this
+     * mode. Disabled by default.
+     */
+    public void setIndicatorViewEnabled(boolean indicatorViewEnabled) {
+        mTabStrip.setIndicatorViewEnabled(indicatorViewEnabled);
+    }
+
+    public boolean isIndicatorViewEnabled() {
+        return mTabStrip.isIndicatorViewEnabled();
+    }
+
+    /**
+     * Enables hardware layer of tabs while the view pager is dragged or settling, so scrolling of
+     * tabs doesn't redraw them. The indicator is drawn outside of the layer. Has no effect when
+     * the indicator view is enabled, see {@link #setIndicatorViewEnabled(boolean)}.
+     * Disabled by default.
+     */
+    public void setDragLayerEnabled(boolean dragLayerEnabled) {
+        this.dragLayerEnabled = dragLayerEnabled;
+        if (!dragLayerEnabled) {
+            mTabStrip.setDragLayerActive(false);
+        }
+    }
+
+    public boolean isDragLayerEnabled() {
+        return dragLayerEnabled;
+    }
+
+    /**
+     * Sets the provider of tab titles to be used instead of {@link PagerAdapter#getPageTitle(int)}.
+     * Titles are requested for ranges of pages and can be delivered asynchronously. Until the
+     * title of a tab comes, the tab is empty and keeps its previous width or gets an estimated
+     * one. Titles delivered within a frame are applied together on the next frame.
+     * <p>
+     * All titles are requested again on adapter changes, and shown titles are kept until the new
+     * ones come. Titles of earlier requests which come late are still applied to pages that haven't
+     * got newer ones. Use {@link #notifyTabRangeChanged(int, int)} to reload only some of them.
+     */
+    public void setTabTitleProvider(TabTitleProvider tabTitleProvider) {
+        if (this.tabTitleProvider == tabTitleProvider) {
+            return;
+        }
+
+        this.tabTitleProvider = tabTitleProvider;
+        // Titles which are shown now are kept until the provider delivers new ones
+        int count = mTabStrip.getTabCount();
+        providedTitles = Arrays.copyOf(tabTitles, Math.max(count, tabTitles.length));
+        providedTitlesPending = new boolean[providedTitles.length];
+        providedTitleSequences = new int[providedTitles.length];
+        providedTitleCount = count;
+        resetProvidedTitles();
+        if (mViewPager != null) {
+            requestTabsUpdate();
+        }
+    }
+
+    public TabTitleProvider getTabTitleProvider() {
+        return tabTitleProvider;
+    }
+
+    /**
+     * Enables lazy binding of tabs. In this mode the view pager is only recorded by
+     * {@link #setViewPager(ViewPager)}, and tabs are created right before the layout is measured,
+     * so they aren't created while the layout is detached or gone. When the adapter has a lot of
+     * pages the first measure creates tabs up to the current page and a few after it, and the
+     * rest are added in small chunks on the following frames. Adapter changes are also applied
+     * on the next measure. Disabled by default.
+     */
+    public void setLazyTabBindingEnabled(boolean lazyTabBindingEnabled) {
+        if (this.lazyTabBindingEnabled == lazyTabBindingEnabled) {
+            return;
+        }
+
+        this.lazyTabBindingEnabled = lazyTabBindingEnabled;
+        if (!lazyTabBindingEnabled) {
+            cancelBindChunks();
+            if (tabsUpdatePending || tabBindLimit != Integer.MAX_VALUE) {
+                tabsUpdatePending = false;
+                tabBindLimit = Integer.MAX_VALUE;
+                if (mViewPager != null) {
+                    notifyDataSetChanged();
+                }
+            }
+        }
+    }
+
+    public boolean isLazyTabBindingEnabled() {
+        return lazyTabBindingEnabled;
+    }
+
+    /**
+     * Sets the maximal distance in pages for which a tab click smoothly scrolls the view pager.
+     * Clicks on more distant tabs switch pages without animation, so pages in between aren't
+     * instantiated, and only the indicator is animated to the clicked tab.
+     * Has no effect on clicks handled by {@link TabClickCallback}. Not limited by default.
+     */
+    public void setSmoothScrollMaxDistance(int pages) {
+        this.smoothScrollMaxDistance = Math.max(0, pages);
+    }
+
+    public int getSmoothScrollMaxDistance() {
+        return smoothScrollMaxDistance;
+    }
+
+    /**
+     * Enables inflation of custom tab views on a background thread. Tabs are shown as empty
+     * placeholders until their views are inflated, then views are attached in small batches per
+     * frame. Custom tab layout must be safe to inflate off the main thread.
+     * Has no effect for default tabs. Disabled by default.
+     *
+     * @see #prewarmTabViews(int)
+     */
+    public void setAsyncTabInflationEnabled(boolean asyncTabInflationEnabled) {
+        if (isAsyncTabInflationEnabled() == asyncTabInflationEnabled) {
+            return;
+        }
+
+        if (asyncTabInflationEnabled) {
+            asyncTabViewInflater = new AsyncTabViewInflater(getContext(), mTabStrip,
+                    new AsyncTabViewInflater.OnTabViewsInflatedListener() {
+                        @Override
+                        public void onTabViewsInflated() {
+                            mTabStrip.onTabViewsAvailable();
+                        }
+                    });
+            asyncTabViewInflater.setLayoutId(mTabViewLayoutId);
+        } else {
+            asyncTabViewInflater.clear();
+            asyncTabViewInflater = null;
+            if (mTabViewLayoutId != 0 && mViewPager != null) {
+                // Replace placeholders with synchronously inflated views
+                mTabStrip.removeAllTabViews();
+                requestTabsUpdate();
+            }
+        }
+    }
+
+    public boolean isAsyncTabInflationEnabled() {
+        return asyncTabViewInflater != null;
+    }
+
+    /**
+     * Starts background inflation of {@code count} custom tab views, so they are ready when the
+     * view pager is set. Works only if custom tab view is set and async inflation is enabled.
+     */
+    public void prewarmTabViews(int count) {
+        if (asyncTabViewInflater != null) {
+            asyncTabViewInflater.prewarm(count);
+        }
+    }
+
+    /**
+     * Sets the pool to take custom tab views from and to put removed ones into. The same pool can
+     * be shared between several tab layouts.
+     */
+    public void setTabViewPool(TabViewPool tabViewPool) {
+        this.tabViewPool = tabViewPool;
+    }
+
+    public TabViewPool getTabViewPool() {
+        return tabViewPool;
+    }
+
+    /**
+     * Set the distance in pixels beyond each edge of the visible area in which tabs are kept bound
+     * when recycling is enabled.
+     */
+    public void setTabRecyclingMargin(int marginPx) {
+        mTabStrip.setRecyclingMargin(marginPx);
+    }
+
     /**
      * Set the custom layout to be inflated for the tab views.
      *
@@ -175,30 +609,163 @@ public class SlidingTabLayout extends HorizontalScrollView {
      * @param textViewId id of the {@link TextView} in the inflated view
      */
     public void setCustomTabView(int layoutResId, int textViewId) {
+        // Views are released to the pool with the previous layout id
+        mTabStrip.removeAllTabViews();
+
         mTabViewLayoutId = layoutResId;
         mTabViewTextViewId = textViewId;
+        if (asyncTabViewInflater != null) {
+            asyncTabViewInflater.setLayoutId(layoutResId);
+        }
 
-        mTabStrip.removeAllViews();
-        notifyDataSetChanged();
+        mTabStrip.setTabAppearanceKey(layoutResId != 0
+                        ? layoutResId
+                        : SlidingTabLayoutStyle.getSlidingTabTextAppearance(getContext()),
+                layoutResId != 0);
+        mTabStrip.setDrawnTabsEnabled(drawnTabsEnabled && layoutResId == 0);
+        if (mViewPager != null) {
+            requestTabsUpdate();
+        }
     }
 
     /**
      * Sets the associated view pager.
      */
     public void setViewPager(ViewPager viewPager) {
-        if (mViewPager != null) {
-            mViewPager.getAdapter().unregisterDataSetObserver(observer);
-            mViewPager.removeOnPageChangeListener(viewPagerListener);
-        }
+        disconnectViewPager();
 
         mViewPager = viewPager;
+        resetProvidedTitles();
         if (viewPager != null) {
             viewPagerListener = new InternalViewPagerListener();
-            viewPager.addOnPageChangeListener(viewPagerListener);
-            viewPager.getAdapter().registerDataSetObserver(observer);
-            notifyDataSetChanged();
+            if (ViewCompat.isAttachedToWindow(this)) {
+                connectViewPager();
+            } else {
+                // Tabs are up to date with the adapter, attach doesn't have to update them again
+                detachedAdapter = viewPager.getAdapter();
+                detachedAdapterCount = detachedAdapter != null ? detachedAdapter.getCount() : 0;
+            }
+            requestTabsUpdate();
         } else {
-            trimChildrenToSize(0);
+            mTabStrip.removeAllTabViews();
+        }
+    }
+
+    /**
+     * Starts listening to the view pager and its current adapter.
+     */
+    private void connectViewPager() {
+        if (viewPagerConnected || mViewPager == null) {
+            return;
+        }
+
+        viewPagerConnected = true;
+        mViewPager.addOnPageChangeListener(viewPagerListener);
+        bindAdapter(mViewPager.getAdapter());
+        getViewTreeObserver().addOnGlobalLayoutListener(adapterChangeListener);
+    }
+
+    @SuppressWarnings("deprecation")
+    @SuppressLint("NewApi")
+    private void disconnectViewPager() {
+        if (!viewPagerConnected) {
+            return;
+        }
+
+        viewPagerConnected = false;
+        mViewPager.removeOnPageChangeListener(viewPagerListener);
+        bindAdapter(null);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            getViewTreeObserver().removeOnGlobalLayoutListener(adapterChangeListener);
+        } else {
+            getViewTreeObserver().removeGlobalOnLayoutListener(adapterChangeListener);
+        }
+    }
+
+    private void bindAdapter(PagerAdapter adapter) {
+        if (boundAdapter == adapter) {
+            return;
+        }
+
+        if (boundAdapter != null) {
+            boundAdapter.unregisterDataSetObserver(observer);
+        }
+        boundAdapter = adapter;
+        if (adapter != null) {
+            adapter.registerDataSetObserver(observer);
+        }
+    }
+
+    private void checkAdapterChanged() {
+        if (viewPagerConnected && mViewPager.getAdapter() != boundAdapter) {
+            bindAdapter(mViewPager.getAdapter());
+            resetProvidedTitles();
+            requestTabsUpdate();
+        }
+    }
+
+    /**
+     * Drops tab views and titles of the layout which has been detached for a long time. They are
+     * created again when the layout is attached.
+     */
+    private void releaseDetachedTabs() {
+        if (!ViewCompat.isAttachedToWindow(this)) {
+            releaseTabs();
+        }
+    }
+
+    private void releaseTabs() {
+        tabsUpdateOnAttach = true;
+        mTabStrip.removeAllTabViews();
+        Arrays.fill(tabTitles, null);
+        Arrays.fill(providedTitles, null);
+        providedTitleCount = 0;
+        resetProvidedTitles();
+        if (asyncTabViewInflater != null) {
+            asyncTabViewInflater.clear();
+        }
+    }
+
+    /**
+     * Rebinds the tab at {@code position} if its title has been changed. Cheaper than
+     * {@link PagerAdapter#notifyDataSetChanged()} because only the given tab is checked.
+     */
+    public void notifyTabChanged(int position) {
+        notifyTabRangeChanged(position, 1);
+    }
+
+    /**
+     * Rebinds tabs in range if their titles have been changed.
+     *
+     * @param positionStart position of the first tab to check
+     * @param itemCount number of tabs to check
+     */
+    public void notifyTabRangeChanged(int positionStart, int itemCount) {
+        if (mViewPager == null) {
+            return;
+        }
+
+        if (tabTitleProvider != null) {
+            int start = Math.max(0, positionStart);
+            int end = Math.min(positionStart + itemCount, providedTitleCount);
+            if (start < end) {
+                tabTitleProvider.loadTabTitles(start, end - start, newProvidedTitlesCallback());
+            }
+            return;
+        }
+
+        final PagerAdapter adapter = mViewPager.getAdapter();
+        if (adapter == null) {
+            return;
+        }
+
+        int end = Math.min(positionStart + itemCount, mTabStrip.getTabCount());
+        for (int i = Math.max(0, positionStart); i < end; i++) {
+            CharSequence title = adapter.getPageTitle(i);
+            if (!TextUtils.equals(tabTitles[i], title)) {
+                tabTitles[i] = title;
+                mTabStrip.onTabsChanged(i, 1);
+            }
         }
     }
 
@@ -212,21 +779,18 @@ public class SlidingTabLayout extends HorizontalScrollView {
         textView.setMaxLines(1);
         textView.setLines(1);
         textView.setEllipsize(TextUtils.TruncateAt.END);
+        SlidingTabLayoutStyle.Resolved style = SlidingTabLayoutStyle.resolve(context);
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-            textView.setTextAppearance(SlidingTabLayoutStyle.getSlidingTabTextAppearance(context));
+            textView.setTextAppearance(style.textAppearance);
         } else {
             //noinspection deprecation
-            textView.setTextAppearance(context, SlidingTabLayoutStyle.getSlidingTabTextAppearance(context));
+            textView.setTextAppearance(context, style.textAppearance);
         }
 
-        TypedValue outValue = new TypedValue();
-        getContext().getTheme().resolveAttribute(android.R.attr.selectableItemBackground,
-                outValue, true);
-        textView.setBackgroundResource(outValue.resourceId);
+        textView.setBackgroundResource(style.tabBackgroundResId);
 
-        float density = getResources().getDisplayMetrics().density;
-        int paddingHoriz = (int) (TAB_VIEW_PADDING_HORIZ_DIPS * density);
-        int paddingVert = (int) (TAB_VIEW_PADDING_VERT_DIPS * density);
+        int paddingHoriz = style.tabPaddingHorizontal;
+        int paddingVert = style.tabPaddingVertical;
         if (getLayoutParams() != null && getLayoutParams().height > 0) {
             int maxHeight = getLayoutParams().height;
             int maxVertPadding = Math.max(0, (maxHeight - (int) textView.getTextSize()) / 2);
@@ -237,73 +801,454 @@ public class SlidingTabLayout extends HorizontalScrollView {
         return textView;
     }
 
+    /**
+     * Updates tabs from the adapter now, or on the next measure in lazy binding mode.
+     */
+    private void requestTabsUpdate() {
+        if (lazyTabBindingEnabled) {
+            if (!tabsUpdatePending) {
+                tabsUpdatePending = true;
+                requestLayout();
+            }
+        } else {
+            notifyDataSetChanged();
+        }
+    }
+
+    /**
+     * Applies pending lazy update of tabs. If a lot of tabs have to be added, the first chunk
+     * includes tabs up to the current page, the rest are added by {@link #bindNextChunk()}.
+     */
+    private void bindPendingTabs() {
+        tabsUpdatePending = false;
+        PagerAdapter adapter = mViewPager.getAdapter();
+        int count = adapter != null ? adapter.getCount() : 0;
+        int firstChunk = Math.max(mTabStrip.getTabCount(), mViewPager.getCurrentItem() + 1) + LAZY_BIND_CHUNK_SIZE;
+        if (count > firstChunk) {
+            tabBindLimit = Math.max(tabBindLimit == Integer.MAX_VALUE ? 0 : tabBindLimit, firstChunk);
+            postBindChunk();
+        } else {
+            tabBindLimit = Integer.MAX_VALUE;
+        }
+        notifyDataSetChanged();
+    }
+
+    private void bindNextChunk() {
+        if (mViewPager == null || tabBindLimit == Integer.MAX_VALUE) {
+            return;
+        }
+
+        PagerAdapter adapter = mViewPager.getAdapter();
+        int count = adapter != null ? adapter.getCount() : 0;
+        tabBindLimit += LAZY_BIND_CHUNK_SIZE;
+        if (tabBindLimit >= count) {
+            tabBindLimit = Integer.MAX_VALUE;
+        } else {
+            postBindChunk();
+        }
+
+        int oldCount = mTabStrip.getTabCount();
+        int newCount = Math.min(count, tabBindLimit);
+        if (newCount > oldCount) {
+            // Tabs before the chunk haven't been changed, adapter changes are handled by observer
+            Tracing.beginSection(Tracing.NOTIFY_DATA_SET_CHANGED);
+            try {
+                appendTabs(oldCount, newCount);
+            } finally {
+                Tracing.endSection();
+            }
+            Tracing.setCounter(Tracing.COUNTER_TAB_COUNT, mTabStrip.getTabCount());
+        } else if (newCount < oldCount) {
+            notifyDataSetChanged();
+        }
+    }
+
+    /**
+     * Adds tabs [oldCount, count) to the end of the strip, only titles of the added tabs are fetched.
+     */
+    private void appendTabs(int oldCount, int count) {
+        if (tabTitles.length < count) {
+            tabTitles = Arrays.copyOf(tabTitles, Math.max(count, tabTitles.length * 2));
+        }
+        if (tabTitleProvider != null) {
+            updatingTabs = true;
+            try {
+                prepareProvidedTitles(count);
+            } finally {
+                updatingTabs = false;
+            }
+            System.arraycopy(providedTitles, oldCount, tabTitles, oldCount, count - oldCount);
+        } else {
+            PagerAdapter adapter = mViewPager.getAdapter();
+            for (int i = oldCount; i < count; i++) {
+                tabTitles[i] = adapter.getPageTitle(i);
+            }
+        }
+
+        mTabStrip.onTabsInserted(oldCount, count - oldCount);
+        scrollToCurrentTabOnLayout();
+    }
+
+    private void postBindChunk() {
+        if (!bindChunkPosted) {
+            bindChunkPosted = true;
+            ViewCompat.postOnAnimation(this, bindChunkRunnable);
+        }
+    }
+
+    private void cancelBindChunks() {
+        if (bindChunkPosted) {
+            bindChunkPosted = false;
+            removeCallbacks(bindChunkRunnable);
+        }
+    }
+
     private void notifyDataSetChanged() {
-        final PagerAdapter adapter = mViewPager.getAdapter();
+        Tracing.beginSection(Tracing.NOTIFY_DATA_SET_CHANGED);
+        try {
+            updateTabs();
+        } finally {
+            Tracing.endSection();
+        }
+        Tracing.setCounter(Tracing.COUNTER_TAB_COUNT, mTabStrip.getTabCount());
+    }
 
-        int count = adapter.getCount();
-        trimChildrenToSize(count);
-        for (int i = 0; i < count; i++) {
-            View tabView = getView(i);
-            TextView tabTitleView = null;
+    private void updateTabs() {
+        final PagerAdapter adapter = mViewPager.getAdapter();
 
-            if (mTabViewLayoutId != 0) {
-                tabTitleView = (TextView) tabView.findViewById(mTabViewTextViewId);
+        int oldCount = mTabStrip.getTabCount();
+        int count = adapter != null ? Math.min(adapter.getCount(), tabBindLimit) : 0;
+        if (newTabTitles.length < count) {
+            newTabTitles = new CharSequence[count];
+        }
+        CharSequence[] titles = newTabTitles;
+        if (tabTitleProvider != null) {
+            updatingTabs = true;
+            try {
+                prepareProvidedTitles(count);
+            } finally {
+                updatingTabs = false;
             }
-            if (tabTitleView == null && TextView.class.isInstance(tabView)) {
-                tabTitleView = (TextView) tabView;
+            System.arraycopy(providedTitles, 0, titles, 0, count);
+        } else {
+            for (int i = 0; i < count; i++) {
+                titles[i] = adapter.getPageTitle(i);
             }
-            if (tabTitleView != null) {
-                tabTitleView.setText(adapter.getPageTitle(i));
+        }
+
+        // Tabs with equal titles at the start and at the end are kept as is
+        int minCount = Math.min(oldCount, count);
+        int prefix = 0;
+        while (prefix < minCount && TextUtils.equals(tabTitles[prefix], titles[prefix])) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < minCount - prefix
+                && TextUtils.equals(tabTitles[oldCount - 1 - suffix], titles[count - 1 - suffix])) {
+            suffix++;
+        }
+
+        int changedEnd = minCount - suffix;
+        boolean changed = false;
+        // Consecutive changed tabs are rebound with one call
+        int changedRunStart = -1;
+        for (int i = prefix; i < changedEnd; i++) {
+            if (!TextUtils.equals(tabTitles[i], titles[i])) {
+                tabTitles[i] = titles[i];
+                if (changedRunStart < 0) {
+                    changedRunStart = i;
+                }
+                changed = true;
+            } else if (changedRunStart >= 0) {
+                mTabStrip.onTabsChanged(changedRunStart, i - changedRunStart);
+                changedRunStart = -1;
             }
         }
+        if (changedRunStart >= 0) {
+            mTabStrip.onTabsChanged(changedRunStart, changedEnd - changedRunStart);
+        }
 
-        mTabStrip.markPositionAsSelected(mViewPager.getCurrentItem());
+        // Swap title arrays, tabTitles now contains titles for all tabs
+        newTabTitles = tabTitles;
+        tabTitles = titles;
+        for (int i = count; i < tabTitles.length; i++) {
+            tabTitles[i] = null;
+        }
 
-        getViewTreeObserver().addOnGlobalLayoutListener(new ViewTreeObserver.OnGlobalLayoutListener() {
-            @SuppressWarnings("deprecation")
-            @SuppressLint("NewApi")
-            @Override
-            public void onGlobalLayout() {
-                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
-                    getViewTreeObserver().removeOnGlobalLayoutListener(this);
-                } else {
-                    getViewTreeObserver().removeGlobalOnLayoutListener(this);
+        boolean structureChanged = oldCount != count;
+        if (count > oldCount) {
+            mTabStrip.onTabsInserted(changedEnd, count - oldCount);
+        } else if (count < oldCount) {
+            mTabStrip.onTabsRemoved(changedEnd, oldCount - count);
+        }
+
+        int currentItem = mViewPager.getCurrentItem();
+        if (structureChanged || mTabStrip.getSelectedTabPosition() != currentItem) {
+            mTabStrip.markPositionAsSelected(currentItem);
+        }
+
+        if (changed || structureChanged) {
+            scrollToCurrentTabOnLayout();
+        }
+    }
+
+    /**
+     * Resizes provided titles to {@code count} pages, new pages are pending. Requests titles
+     * which haven't been requested in the current generation.
+     */
+    private void prepareProvidedTitles(int count) {
+        if (providedTitles.length < count) {
+            // Lazy binding grows titles chunk by chunk
+            int capacity = Math.max(count, providedTitles.length * 2);
+            providedTitles = Arrays.copyOf(providedTitles, capacity);
+            providedTitlesPending = Arrays.copyOf(providedTitlesPending, capacity);
+            providedTitleSequences = Arrays.copyOf(providedTitleSequences, capacity);
+        }
+        for (int i = providedTitleCount; i < count; i++) {
+            providedTitles[i] = null;
+            providedTitlesPending[i] = true;
+            providedTitleSequences[i] = 0;
+        }
+        for (int i = count; i < providedTitleCount; i++) {
+            providedTitles[i] = null;
+            providedTitlesPending[i] = false;
+            providedTitleSequences[i] = 0;
+        }
+        providedTitleCount = count;
+
+        if (requestedTitleCount < count) {
+            int start = requestedTitleCount;
+            requestedTitleCount = count;
+            // Synchronous provider fills titles right here
+            tabTitleProvider.loadTabTitles(start, count - start, newProvidedTitlesCallback());
+        } else {
+            requestedTitleCount = count;
+        }
+    }
+
+    /**
+     * Makes titles to be requested again from the provider. Titles of requests which are in flight
+     * are still applied to pages which don't get newer titles first.
+     */
+    private void invalidateProvidedTitles() {
+        requestedTitleCount = 0;
+    }
+
+    /**
+     * Makes titles to be requested again from the provider, titles delivered for previous
+     * requests are ignored.
+     */
+    private void resetProvidedTitles() {
+        titlesGeneration++;
+        requestedTitleCount = 0;
+    }
+
+    private ProvidedTitlesCallback newProvidedTitlesCallback() {
+        return new ProvidedTitlesCallback(titlesGeneration, ++titlesRequestSequence);
+    }
+
+    private void onProvidedTitlesLoaded(int generation, int sequence, int positionStart, CharSequence[] titles) {
+        if (generation != titlesGeneration || tabTitleProvider == null) {
+            return;
+        }
+
+        int end = Math.min(positionStart + titles.length, providedTitleCount);
+        for (int i = Math.max(0, positionStart); i < end; i++) {
+            if (sequence > providedTitleSequences[i]) {
+                providedTitles[i] = titles[i - positionStart];
+                providedTitlesPending[i] = false;
+                providedTitleSequences[i] = sequence;
+            }
+        }
+        if (!updatingTabs && !applyTitlesPosted) {
+            applyTitlesPosted = true;
+            ViewCompat.postOnAnimation(this, applyTitlesRunnable);
+        }
+    }
+
+    private void scrollToCurrentTabOnLayout() {
+        if (!scrollOnLayoutPending) {
+            scrollOnLayoutPending = true;
+            getViewTreeObserver().addOnGlobalLayoutListener(scrollOnLayoutListener);
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    @SuppressLint("NewApi")
+    private void removeScrollOnLayoutListener() {
+        if (!scrollOnLayoutPending) {
+            return;
+        }
+
+        scrollOnLayoutPending = false;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            getViewTreeObserver().removeOnGlobalLayoutListener(scrollOnLayoutListener);
+        } else {
+            getViewTreeObserver().removeGlobalOnLayoutListener(scrollOnLayoutListener);
+        }
+    }
+
+    /**
+     * Applies pager scroll to the indicator and tabs scroll. Only the first callback of a frame is
+     * applied immediately, so the indicator doesn't trail the pager, and the following ones are
+     * coalesced into a single update on the next frame.
+     */
+    private void schedulePageScroll(int position, float positionOffset) {
+        if (performanceMetrics != null) {
+            performanceMetrics.onPageScrollCallback();
+        }
+        if (isIndicatorJumpRunning()) {
+            // Indicator is moved by the jump animation, target position is applied when it ends
+            return;
+        }
+        if (scrollFramePosted) {
+            pendingScrollPosition = position;
+            pendingScrollOffset = positionOffset;
+            scrollPending = true;
+            return;
+        }
+
+        scrollFramePosted = true;
+        ViewCompat.postOnAnimation(this, scrollFrameRunnable);
+        applyScrollFrame(position, positionOffset);
+    }
+
+    private void applyScrollFrame(int position, float positionOffset) {
+        if (performanceMetrics != null) {
+            performanceMetrics.onScrollFrame();
+        }
+        if (!isIndicatorJumpRunning()) {
+            applyPageScroll(position, positionOffset);
+        }
+    }
+
+    // Package-private for allocation tests
+    void applyPageScroll(int position, float positionOffset) {
+        int tabCount = mTabStrip.getTabCount();
+        if ((tabCount == 0) || (position < 0) || (position >= tabCount)) {
+            return;
+        }
+
+        mTabStrip.onViewPagerPageChanged(position, positionOffset);
+
+        int selectedTitleWidth = mTabStrip.getTabRight(position) - mTabStrip.getTabLeft(position);
+        int extraOffset = (int) (positionOffset * selectedTitleWidth);
+        scrollToTab(position, extraOffset);
+    }
+
+    /**
+     * Animates the indicator and tabs scroll from the currently shown position to {@code toPosition}.
+     */
+    private void startIndicatorJump(int fromPosition, int toPosition) {
+        float from = fromPosition;
+        if (isIndicatorJumpRunning()) {
+            from = (Float) indicatorJumpAnimator.getAnimatedValue();
+            indicatorJumpAnimator.cancel();
+        } else if (scrollPending) {
+            from = pendingScrollPosition + pendingScrollOffset;
+        }
+
+        if (indicatorJumpAnimator == null) {
+            indicatorJumpAnimator = ValueAnimator.ofFloat(from, toPosition);
+            indicatorJumpAnimator.setDuration(INDICATOR_JUMP_DURATION_MS);
+            indicatorJumpAnimator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
+                @Override
+                public void onAnimationUpdate(ValueAnimator animation) {
+                    float value = (Float) animation.getAnimatedValue();
+                    int position = (int) value;
+                    applyPageScroll(position, value - position);
                 }
-                if (mViewPager != null) {
-                    scrollToTab(mViewPager.getCurrentItem(), 0);
+            });
+            indicatorJumpAnimator.addListener(new AnimatorListenerAdapter() {
+                @Override
+                public void onAnimationCancel(Animator animation) {
+                    indicatorJumpCancelled = true;
                 }
-            }
-        });
+
+                @Override
+                public void onAnimationEnd(Animator animation) {
+                    if (!indicatorJumpCancelled && mViewPager != null) {
+                        // Pager could be moved while the indicator was animated
+                        applyPageScroll(mViewPager.getCurrentItem(), 0f);
+                    }
+                }
+            });
+        } else {
+            indicatorJumpAnimator.setFloatValues(from, toPosition);
+        }
+        indicatorJumpCancelled = false;
+        indicatorJumpAnimator.start();
+    }
+
+    private boolean isIndicatorJumpRunning() {
+        return indicatorJumpAnimator != null && indicatorJumpAnimator.isRunning();
     }
 
-    private View getView(int position) {
-        if (position < mTabStrip.getChildCount()) {
-            return mTabStrip.getChildAt(position);
+    private void cancelIndicatorJump() {
+        if (isIndicatorJumpRunning()) {
+            indicatorJumpAnimator.cancel();
         }
+    }
+
+    private void bindTabTitle(View tabView, CharSequence title) {
+        TextView tabTitleView = null;
 
-        View tabView = null;
         if (mTabViewLayoutId != 0) {
-            // If there is a custom tab view layout id set, try and inflate it
-            tabView = LayoutInflater.from(getContext()).inflate(mTabViewLayoutId, mTabStrip,
-                    false);
+            tabTitleView = (TextView) tabView.findViewById(mTabViewTextViewId);
+        }
+        if (tabTitleView == null && TextView.class.isInstance(tabView)) {
+            tabTitleView = (TextView) tabView;
+        }
+        if (tabTitleView != null) {
+            tabTitleView.setText(title);
+        }
+    }
+
+    private View createTabView() {
+        View tabView = null;
+        if (mTabViewLayoutId != 0 && tabViewPool != null) {
+            tabView = tabViewPool.acquire(getContext(), mTabViewLayoutId);
+        }
+        boolean reused = tabView != null;
+        if (reused) {
+            if (performanceMetrics != null) {
+                performanceMetrics.onTabReused();
+            }
+        } else if (mTabViewLayoutId != 0) {
+            if (asyncTabViewInflater != null) {
+                // Placeholder is shown until the view is inflated in background
+                tabView = asyncTabViewInflater.poll();
+                if (tabView == null) {
+                    return null;
+                }
+            } else {
+                // If there is a custom tab view layout id set, try and inflate it
+                Tracing.beginSection(Tracing.INFLATE_TAB_VIEW);
+                try {
+                    tabView = LayoutInflater.from(getContext()).inflate(mTabViewLayoutId, mTabStrip,
+                            false);
+                } finally {
+                    Tracing.endSection();
+                }
+            }
         }
 
         if (tabView == null) {
-            tabView = createDefaultTabView(getContext());
+            Tracing.beginSection(Tracing.CREATE_DEFAULT_TAB_VIEW);
+            try {
+                tabView = createDefaultTabView(getContext());
+            } finally {
+                Tracing.endSection();
+            }
+        }
+        if (!reused && performanceMetrics != null) {
+            performanceMetrics.onTabInflated();
         }
 
         tabView.setOnClickListener(tabClickListener);
-        mTabStrip.addView(tabView);
         return tabView;
     }
 
-    private void trimChildrenToSize(int newSize) {
-        int size = Math.max(0, newSize);
-        if (size < mTabStrip.getChildCount()) {
-            mTabStrip.removeViews(size, mTabStrip.getChildCount() - size);
-        }
-    }
-
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
         // If we have a MeasureSpec which allows us to decide our height, try and use the default
@@ -320,87 +1265,425 @@ public class SlidingTabLayout extends HorizontalScrollView {
                 break;
         }
 
+        if (tabsUpdatePending && mViewPager != null && ViewCompat.isAttachedToWindow(this)) {
+            bindPendingTabs();
+        }
+
         super.onMeasure(widthMeasureSpec, heightMeasureSpec);
     }
 
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        super.onLayout(changed, l, t, r, b);
+
+        if (restoredScrollX >= 0 && mTabStrip.getTabCount() > 0) {
+            if (mViewPager != null && mViewPager.getCurrentItem() == restoredSelectedPosition
+                    && getWidth() == restoredViewportWidth) {
+                // Restored scroll is used instead of scrolling to the current tab
+                removeScrollOnLayoutListener();
+                scrollTo(restoredScrollX, 0);
+            }
+            restoredScrollX = -1;
+        }
+    }
+
+    @Override
+    protected void dispatchDraw(Canvas canvas) {
+        super.dispatchDraw(canvas);
+        if (mTabStrip.isDragLayerActive()) {
+            int saveCount = canvas.save();
+            canvas.translate(mTabStrip.getLeft(), mTabStrip.getTop());
+            mTabStrip.drawIndicator(canvas);
+            canvas.restoreToCount(saveCount);
+        }
+    }
+
+    @Override
+    protected void onScrollChanged(int l, int t, int oldl, int oldt) {
+        super.onScrollChanged(l, t, oldl, oldt);
+        mTabStrip.onViewportChanged();
+    }
+
     @Override
     protected void onAttachedToWindow() {
         super.onAttachedToWindow();
 
+        MAIN_HANDLER.removeCallbacks(releaseDetachedTabsRunnable);
         if (mViewPager != null) {
+            connectViewPager();
+            PagerAdapter adapter = mViewPager.getAdapter();
+            if (adapter != detachedAdapter) {
+                resetProvidedTitles();
+                requestTabsUpdate();
+            } else if (tabsUpdateOnAttach || (adapter != null && adapter.getCount() != detachedAdapterCount)) {
+                invalidateProvidedTitles();
+                requestTabsUpdate();
+            }
+            tabsUpdateOnAttach = false;
+            detachedAdapter = null;
             scrollToTab(mViewPager.getCurrentItem(), 0);
         }
     }
 
-    private void scrollToTab(int tabIndex, int positionOffset) {
-        final int tabStripChildCount = mTabStrip.getChildCount();
-        if (tabStripChildCount == 0 || tabIndex < 0 || tabIndex >= tabStripChildCount) {
+    @Override
+    protected Parcelable onSaveInstanceState() {
+        SavedState savedState = new SavedState(super.onSaveInstanceState());
+        int tabCount = mTabStrip.getTabCount();
+        savedState.selectedPosition = mViewPager != null
+                ? mViewPager.getCurrentItem()
+                : mTabStrip.getSelectedTabPosition();
+        savedState.scrollX = getScrollX();
+        savedState.viewportWidth = getWidth();
+        savedState.configKey = computeTabWidthsConfigKey();
+        savedState.tabWidths = new int[tabCount];
+        savedState.titleHashes = new int[tabCount];
+        mTabStrip.getMeasuredTabWidths(savedState.tabWidths, savedState.titleHashes);
+        return savedState;
+    }
+
+    @Override
+    protected void onRestoreInstanceState(Parcelable state) {
+        if (!(state instanceof SavedState)) {
+            super.onRestoreInstanceState(state);
             return;
         }
 
-        View selectedChild = mTabStrip.getChildAt(tabIndex);
-        if (selectedChild != null) {
-            int targetScrollX = selectedChild.getLeft() + positionOffset;
+        SavedState savedState = (SavedState) state;
+        super.onRestoreInstanceState(savedState.getSuperState());
+        // Widths are valid only for the same appearance of tabs and text scale
+        if (savedState.configKey == computeTabWidthsConfigKey()) {
+            mTabStrip.setRestoredTabWidths(savedState.tabWidths, savedState.titleHashes);
+        }
+        restoredSelectedPosition = savedState.selectedPosition;
+        restoredScrollX = savedState.scrollX;
+        restoredViewportWidth = savedState.viewportWidth;
+    }
+
+    /**
+     * @return key of the configuration intrinsic widths of tabs depend on
+     */
+    private int computeTabWidthsConfigKey() {
+        Configuration configuration = getResources().getConfiguration();
+        int key = mTabViewLayoutId != 0
+                ? mTabViewLayoutId
+                : SlidingTabLayoutStyle.getSlidingTabTextAppearance(getContext());
+        key = 31 * key + Float.floatToIntBits(configuration.fontScale);
+        key = 31 * key + Float.floatToIntBits(getResources().getDisplayMetrics().density);
+        key = 31 * key + (configuration.locale != null ? configuration.locale.hashCode() : 0);
+        return key;
+    }
+
+    @Override
+    protected void onConfigurationChanged(Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+        SlidingTabLayoutStyle.invalidate();
+    }
 
-            if (tabIndex > 0 || positionOffset > 0) {
-                // If we're not at the first child and are mid-scroll, make sure we obey the offset
-                targetScrollX -= mTitleOffset;
+    @Override
+    protected void onDetachedFromWindow() {
+        removeScrollOnLayoutListener();
+        cancelIndicatorJump();
+        if (bindChunkPosted) {
+            // Remaining tabs are bound on the next measure after attach
+            cancelBindChunks();
+            tabsUpdatePending = true;
+        }
+        if (applyTitlesPosted) {
+            // Loaded titles are applied on attach
+            applyTitlesPosted = false;
+            removeCallbacks(applyTitlesRunnable);
+            tabsUpdateOnAttach = true;
+        }
+        disconnectViewPager();
+        if (mViewPager != null) {
+            detachedAdapter = mViewPager.getAdapter();
+            detachedAdapterCount = detachedAdapter != null ? detachedAdapter.getCount() : 0;
+        }
+        boolean activityFinishing = isActivityFinishing();
+        if (mViewPager != null) {
+            if (activityFinishing) {
+                // Layout won't be attached again
+                releaseTabs();
+            } else {
+                MAIN_HANDLER.postDelayed(releaseDetachedTabsRunnable, RELEASE_DETACHED_TABS_DELAY_MS);
             }
+        }
+        if (activityFinishing && tabViewPool != null) {
+            // Pool unregisters its memory callbacks when it's empty, so the activity isn't retained
+            tabViewPool.clear(getContext());
+        }
+        if (scrollFramePosted) {
+            scrollFramePosted = false;
+            scrollPending = false;
+            removeCallbacks(scrollFrameRunnable);
+        }
+        super.onDetachedFromWindow();
+    }
 
+    /**
+     * @return true if the activity of this layout is finishing or destroyed
+     */
+    @SuppressLint("NewApi")
+    private boolean isActivityFinishing() {
+        Context context = getContext();
+        while (context instanceof ContextWrapper) {
+            if (context instanceof Activity) {
+                Activity activity = (Activity) context;
+                return activity.isFinishing()
+                        || (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1 && activity.isDestroyed());
+            }
+            context = ((ContextWrapper) context).getBaseContext();
+        }
+        return false;
+    }
+
+    private void scrollToTab(int tabIndex, int positionOffset) {
+        Tracing.beginSection(Tracing.SCROLL_TO_TAB);
+        try {
+            scrollToTabInternal(tabIndex, positionOffset);
+        } finally {
+            Tracing.endSection();
+        }
+    }
+
+    private void scrollToTabInternal(int tabIndex, int positionOffset) {
+        final int tabCount = mTabStrip.getTabCount();
+        if (tabCount == 0 || tabIndex < 0 || tabIndex >= tabCount) {
+            return;
+        }
+
+        int targetScrollX = TabLayoutEngine.computeScrollTarget(mTabStrip.getTabLeft(tabIndex), tabIndex,
+                positionOffset, mTitleOffset);
+        if (targetScrollX != getScrollX()) {
             scrollTo(targetScrollX, 0);
         }
     }
 
-    private class InternalViewPagerListener implements ViewPager.OnPageChangeListener {
-        private int mScrollState;
+    /**
+     * Posted for a detached layout, doesn't keep the layout and its activity from being collected.
+     */
+    private static class ReleaseDetachedTabsRunnable implements Runnable {
+        private final WeakReference<SlidingTabLayout> layoutRef;
+
+        ReleaseDetachedTabsRunnable(SlidingTabLayout layout) {
+            layoutRef = new WeakReference<>(layout);
+        }
 
         @Override
-        public void onPageScrolled(int position, float positionOffset, int positionOffsetPixels) {
-            int tabStripChildCount = mTabStrip.getChildCount();
-            if ((tabStripChildCount == 0) || (position < 0) || (position >= tabStripChildCount)) {
-                return;
+        public void run() {
+            SlidingTabLayout layout = layoutRef.get();
+            if (layout != null) {
+                layout.releaseDetachedTabs();
             }
+        }
+    }
 
-            mTabStrip.onViewPagerPageChanged(position, positionOffset);
+    private class InternalViewPagerListener implements ViewPager.OnPageChangeListener {
+        private int mScrollState;
 
-            View selectedTitle = mTabStrip.getChildAt(position);
-            int extraOffset = (selectedTitle != null)
-                    ? (int) (positionOffset * selectedTitle.getWidth())
-                    : 0;
-            scrollToTab(position, extraOffset);
+        @Override
+        public void onPageScrolled(int position, float positionOffset, int positionOffsetPixels) {
+            schedulePageScroll(position, positionOffset);
         }
 
         @Override
         public void onPageScrollStateChanged(int state) {
             mScrollState = state;
+            if (state == ViewPager.SCROLL_STATE_DRAGGING) {
+                // User takes over, pager scroll is applied again
+                cancelIndicatorJump();
+            }
+            if (dragLayerEnabled) {
+                mTabStrip.setDragLayerActive(state != ViewPager.SCROLL_STATE_IDLE);
+            }
         }
 
         @Override
         public void onPageSelected(int position) {
             if (mScrollState == ViewPager.SCROLL_STATE_IDLE) {
-                mTabStrip.onViewPagerPageChanged(position, 0f);
-                scrollToTab(position, 0);
+                schedulePageScroll(position, 0f);
             }
             mTabStrip.markPositionAsSelected(position);
         }
 
     }
 
-    private class TabClickListener implements OnClickListener {
+    private class TabClickListener implements OnClickListener, SlidingTabStrip.OnTabClickListener {
         @Override
         public void onClick(View v) {
-            for (int i = 0; i < mTabStrip.getChildCount(); i++) {
-                if (v == mTabStrip.getChildAt(i)) {
-                    if (tabClickCallback == null
-                            || !tabClickCallback.onTabClicked(i)) {
-                        mViewPager.setCurrentItem(i);
-                    }
-                    return;
+            Object position = v.getTag(R.id.stl_tab_position);
+            if (position instanceof Integer) {
+                onTabClicked((Integer) position);
+            }
+        }
+
+        @Override
+        public void onTabClick(int position) {
+            onTabClicked(position);
+        }
+
+        private void onTabClicked(int position) {
+            if (tabClickCallback == null
+                    || !tabClickCallback.onTabClicked(position)) {
+                int currentItem = mViewPager.getCurrentItem();
+                if (Math.abs(position - currentItem) <= smoothScrollMaxDistance) {
+                    mViewPager.setCurrentItem(position);
+                } else {
+                    startIndicatorJump(currentItem, position);
+                    mViewPager.setCurrentItem(position, false);
                 }
             }
         }
     }
 
+    private class InternalTabViewBinder implements SlidingTabStrip.TabViewBinder {
+        @Override
+        public View createTabView() {
+            return SlidingTabLayout.this.createTabView();
+        }
+
+        @Override
+        public View createMeasuringTabView() {
+            return createDefaultTabView(getContext());
+        }
+
+        @Override
+        public void requestTabViews(int placeholderCount) {
+            if (asyncTabViewInflater != null) {
+                // Only views which are neither ready nor inflating are requested
+                asyncTabViewInflater.prewarm(placeholderCount);
+            }
+        }
+
+        @Override
+        public void bindTabView(View tabView, int position) {
+            bindTabTitle(tabView, tabTitles[position]);
+            if (performanceMetrics != null) {
+                performanceMetrics.onTitleRebound();
+            }
+        }
+
+        @Override
+        public void releaseTabView(View tabView) {
+            // Views of a finishing activity would keep it alive in the pool
+            if (tabViewPool != null && mTabViewLayoutId != 0 && !isActivityFinishing()) {
+                tabViewPool.release(mTabViewLayoutId, tabView);
+            }
+        }
+
+        @Override
+        public CharSequence getTabTitle(int position) {
+            return tabTitles[position];
+        }
+
+        @Override
+        public boolean isTabTitlePending(int position) {
+            return tabTitleProvider != null && position < providedTitleCount && providedTitlesPending[position];
+        }
+    }
+
+    private class ProvidedTitlesCallback implements TabTitlesCallback {
+        private final int generation;
+        private final int sequence;
+
+        ProvidedTitlesCallback(int generation, int sequence) {
+            this.generation = generation;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void onTabTitlesLoaded(final int positionStart, final CharSequence[] titles) {
+            if (Looper.myLooper() == Looper.getMainLooper()) {
+                onProvidedTitlesLoaded(generation, sequence, positionStart, titles);
+            } else {
+                MAIN_HANDLER.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onProvidedTitlesLoaded(generation, sequence, positionStart, titles);
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Supplies tab titles instead of {@link PagerAdapter#getPageTitle(int)}. Set with
+     * {@link #setTabTitleProvider(TabTitleProvider)}.
+     */
+    public interface TabTitleProvider {
+        /**
+         * Requests titles of pages in range. Called on the main thread. Titles can be delivered
+         * right away or later from any thread, in one or several parts.
+         *
+         * @param positionStart position of the first requested page
+         * @param itemCount number of requested pages
+         * @param callback callback to deliver titles to
+         */
+        void loadTabTitles(int positionStart, int itemCount, TabTitlesCallback callback);
+    }
+
+    public interface TabTitlesCallback {
+        /**
+         * @param positionStart position of the page of the first title
+         * @param titles loaded titles, the array must not be modified after this call
+         */
+        void onTabTitlesLoaded(int positionStart, CharSequence[] titles);
+    }
+
+    static class SavedState extends BaseSavedState {
+        int selectedPosition;
+        int scrollX;
+        int viewportWidth;
+        int configKey;
+        // Intrinsic widths of tabs and hashes of titles they were measured with
+        int[] tabWidths;
+        int[] titleHashes;
+
+        SavedState(Parcelable superState) {
+            super(superState);
+        }
+
+        private SavedState(Parcel in) {
+            super(in);
+            selectedPosition = in.readInt();
+            scrollX = in.readInt();
+            viewportWidth = in.readInt();
+            configKey = in.readInt();
+            tabWidths = in.createIntArray();
+            titleHashes = in.createIntArray();
+        }
+
+        @Override
+        public void writeToParcel(Parcel out, int flags) {
+            super.writeToParcel(out, flags);
+            out.writeInt(selectedPosition);
+            out.writeInt(scrollX);
+            out.writeInt(viewportWidth);
+            out.writeInt(configKey);
+            out.writeIntArray(tabWidths);
+            out.writeIntArray(titleHashes);
+        }
+
+        public static final Parcelable.Creator<SavedState> CREATOR = new Parcelable.Creator<SavedState>() {
+            @Override
+            public SavedState createFromParcel(Parcel in) {
+                return new SavedState(in);
+            }
+
+            @Override
+            public SavedState[] newArray(int size) {
+                return new SavedState[size];
+            }
+        };
+    }
+
+    public interface PerformanceListener {
+        /**
+         * @param metrics aggregated metrics, the same instance is passed on every call
+         */
+        void onPerformanceMetrics(PerformanceMetrics metrics);
+    }
+
     public interface TabClickCallback {
         /**
          * @param tabIndex index of clicked tab
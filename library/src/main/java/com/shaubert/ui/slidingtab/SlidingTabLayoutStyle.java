@@ -1,36 +1,89 @@
 package com.shaubert.ui.slidingtab;
 
 import android.content.Context;
+import android.content.res.Resources;
 import android.content.res.TypedArray;
 import android.graphics.Color;
+import android.util.TypedValue;
+
+import java.util.Map;
+import java.util.WeakHashMap;
 
 public class SlidingTabLayoutStyle {
 
     private static final int[] STYLE_ATTR = { R.attr.stl_slidingTabLayoutStyle };
 
+    private static final int TAB_VIEW_PADDING_HORIZ_DIPS = 12;
+    private static final int TAB_VIEW_PADDING_VERT_DIPS = 8;
+
+    // Styles are resolved once per theme and shared by all layouts in the process
+    private static final Map<Resources.Theme, Resolved> RESOLVED_STYLES = new WeakHashMap<>();
+
     public static int getSlidingTabTextAppearance(Context context) {
-        TypedArray typedArray = context.getTheme().obtainStyledAttributes(
-                getSlidingTabLayoutTheme(context), R.styleable.STL_SlidingTabLayoutTheme);
-        int resId = typedArray.getResourceId(
-                R.styleable.STL_SlidingTabLayoutTheme_stl_slidingTabTextAppearance, R.style.STL_SlidingTabTextAppearance);
-        typedArray.recycle();
-        return resId;
+        return resolve(context).textAppearance;
     }
 
     public static int getSlidingTabStripColor(Context context) {
-        TypedArray typedArray = context.getTheme().obtainStyledAttributes(
-                getSlidingTabLayoutTheme(context), R.styleable.STL_SlidingTabLayoutTheme);
-        int color = typedArray.getColor(R.styleable.STL_SlidingTabLayoutTheme_stl_slidingTabStripColor, Color.BLUE);
-        typedArray.recycle();
-        return color;
+        return resolve(context).stripColor;
     }
 
     public static int getSlidingTabLayoutTheme(Context context) {
-        TypedArray typedArray = context.getTheme().obtainStyledAttributes(STYLE_ATTR);
-        int resId = typedArray.getResourceId(0, R.style.STL_DefaultStyle);
-        typedArray.recycle();
+        return resolve(context).layoutTheme;
+    }
+
+    /**
+     * @return style attributes resolved for the theme of {@code context}
+     */
+    static Resolved resolve(Context context) {
+        Resources.Theme theme = context.getTheme();
+        synchronized (RESOLVED_STYLES) {
+            Resolved resolved = RESOLVED_STYLES.get(theme);
+            if (resolved == null) {
+                resolved = new Resolved(context);
+                RESOLVED_STYLES.put(theme, resolved);
+            }
+            return resolved;
+        }
+    }
+
+    /**
+     * Drops all resolved styles, they will be resolved again on the next request. Should be called
+     * when configuration changes as resources might be different.
+     */
+    public static void invalidate() {
+        synchronized (RESOLVED_STYLES) {
+            RESOLVED_STYLES.clear();
+        }
+    }
+
+    static class Resolved {
+        final int layoutTheme;
+        final int textAppearance;
+        final int stripColor;
+        final int tabBackgroundResId;
+        final int tabPaddingHorizontal;
+        final int tabPaddingVertical;
+
+        Resolved(Context context) {
+            Resources.Theme theme = context.getTheme();
+            TypedArray typedArray = theme.obtainStyledAttributes(STYLE_ATTR);
+            layoutTheme = typedArray.getResourceId(0, R.style.STL_DefaultStyle);
+            typedArray.recycle();
+
+            typedArray = theme.obtainStyledAttributes(layoutTheme, R.styleable.STL_SlidingTabLayoutTheme);
+            textAppearance = typedArray.getResourceId(
+                    R.styleable.STL_SlidingTabLayoutTheme_stl_slidingTabTextAppearance, R.style.STL_SlidingTabTextAppearance);
+            stripColor = typedArray.getColor(R.styleable.STL_SlidingTabLayoutTheme_stl_slidingTabStripColor, Color.BLUE);
+            typedArray.recycle();
+
+            TypedValue outValue = new TypedValue();
+            theme.resolveAttribute(android.R.attr.selectableItemBackground, outValue, true);
+            tabBackgroundResId = outValue.resourceId;
 
-        return resId;
+            float density = context.getResources().getDisplayMetrics().density;
+            tabPaddingHorizontal = (int) (TAB_VIEW_PADDING_HORIZ_DIPS * density);
+            tabPaddingVertical = (int) (TAB_VIEW_PADDING_VERT_DIPS * density);
+        }
     }
 
 }
@@ -20,13 +20,77 @@ import android.content.Context;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.content.res.ColorStateList;
+import android.os.Bundle;
+import android.support.v4.view.ViewCompat;
+import android.support.v4.view.accessibility.AccessibilityNodeInfoCompat;
+import android.support.v4.widget.ExploreByTouchHelper;
+import android.text.TextPaint;
+import android.text.TextUtils;
 import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.view.SoundEffectConstants;
 import android.view.View;
+import android.view.ViewConfiguration;
 import android.view.ViewGroup;
+import android.view.accessibility.AccessibilityEvent;
 import android.widget.LinearLayout;
+import android.widget.TextView;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 class SlidingTabStrip extends LinearLayout {
 
+    /**
+     * Creates tab views and binds them to tab positions.
+     */
+    interface TabViewBinder {
+
+        /**
+         * @return new tab view or null if it's not available yet, placeholder is shown in the
+         * meantime. {@link #onTabViewsAvailable()} should be called when views become available.
+         */
+        View createTabView();
+
+        /**
+         * @return view of a default tab used only to measure titles. It's never attached and
+         * isn't counted as a tab inflation.
+         */
+        View createMeasuringTabView();
+
+        /**
+         * Called when a placeholder is created. Binder should make sure that views for all
+         * {@code placeholderCount} placeholders are ready or coming.
+         */
+        void requestTabViews(int placeholderCount);
+
+        void bindTabView(View tabView, int position);
+
+        /**
+         * Called for detached tab views which are no longer needed by the strip.
+         */
+        void releaseTabView(View tabView);
+
+        CharSequence getTabTitle(int position);
+
+        /**
+         * @return true if title of the tab isn't available yet. Such tab keeps its known width or
+         * gets an estimated one until the title comes.
+         */
+        boolean isTabTitlePending(int position);
+
+    }
+
+    interface OnTabClickListener {
+
+        void onTabClick(int position);
+
+    }
+
     private static final int DEFAULT_BOTTOM_BORDER_THICKNESS_DIPS = 0;
     private static final byte DEFAULT_BOTTOM_BORDER_COLOR_ALPHA = 0x26;
     private static final int SELECTED_INDICATOR_THICKNESS_DIPS = 3;
@@ -35,6 +99,22 @@ class SlidingTabStrip extends LinearLayout {
     private static final byte DEFAULT_DIVIDER_COLOR_ALPHA = 0x30;
     private static final float DEFAULT_DIVIDER_HEIGHT = 0.5f;
 
+    private static final int BADGE_WIDTH_DIPS = 24;
+    private static final int BADGE_HEIGHT_DIPS = 16;
+    private static final int BADGE_MARGIN_DIPS = 4;
+    private static final int BADGE_TEXT_SIZE_SP = 10;
+    private static final int MAX_BADGE_COUNT = 99;
+    private static final String MAX_BADGE_COUNT_EXCEEDED_TEXT = MAX_BADGE_COUNT + "+";
+    // Texts of badge counts, created on demand
+    private static final String[] BADGE_TEXTS = new String[MAX_BADGE_COUNT + 1];
+
+    private static final int DEFAULT_ESTIMATED_TAB_WIDTH_DIPS = 96;
+    private static final int MAX_RECYCLING_MEASURE_ITERATIONS = 3;
+    private static final int MAX_PLACEHOLDERS_REPLACED_PER_FRAME = 4;
+
+    private static final int[] DRAWN_TAB_STATE = { android.R.attr.state_enabled };
+    private static final int[] DRAWN_SELECTED_TAB_STATE = { android.R.attr.state_enabled, android.R.attr.state_selected };
+
     private final int mBottomBorderThickness;
     private final Paint mBottomBorderPaint;
 
@@ -47,9 +127,126 @@ class SlidingTabStrip extends LinearLayout {
     private int mSelectedPosition;
     private float mSelectionOffset;
 
+    // Indicator bounds and color as they were last drawn
+    private final TabLayoutEngine.Indicator mIndicator = new TabLayoutEngine.Indicator();
+    private int mIndicatorColor;
+    // Child view which shows the indicator instead of onDraw(), it's moved and scaled with
+    // view properties, so pager scroll doesn't invalidate the strip
+    private View mIndicatorView;
+    // While the strip is in a hardware layer the indicator is drawn by the parent, so its
+    // movement doesn't invalidate the layer
+    private boolean mDragLayerActive;
+
+    // Indicator colors between the tab pair starting at mGradientPosition, indexed by
+    // selection offset scaled to GRADIENT_STEPS
+    private static final int GRADIENT_STEPS = 64;
+    private final int[] mGradient = new int[GRADIENT_STEPS + 1];
+    private int mGradientPosition = -1;
+
+    // Divider geometry, updated on size change
+    private int mDividerTop;
+    private int mDividerBottom;
+
+    // Divider lines grouped by color, each bucket is drawn with one drawLines() call.
+    // Rebuilt after layout or change of colors
+    private boolean mDividersDirty = true;
+    private int mDividerBucketCount;
+    private int[] mDividerBucketColors = new int[0];
+    private int[] mDividerBucketSizes = new int[0];
+    private float[][] mDividerBucketLines = new float[0][];
+
+    // Badge counts by tab position, 0 if tab has no badge. Badges are drawn in slots of fixed
+    // size at the top right corner of tabs, so a count change redraws only its slot
+    private int[] mBadgeCounts = new int[0];
+    private int mBadgedTabCount;
+    private final int mBadgeWidth;
+    private final int mBadgeHeight;
+    private final int mBadgeMargin;
+    private final Paint mBadgePaint;
+    private final Paint mBadgeTextPaint;
+    private final float mBadgeTextBaselineOffset;
+    private final RectF mBadgeRect = new RectF();
+    private final Rect mBadgeClipBounds = new Rect();
+
     private SlidingTabLayout.TabColorizer mCustomTabColorizer;
     private final SimpleTabColorizer mDefaultTabColorizer;
 
+    private TabViewBinder mTabViewBinder;
+    private boolean mRecyclingEnabled;
+    private int mRecyclingMargin;
+    private final int mEstimatedTabWidth;
+
+    private int mTabAppearanceKey;
+    private boolean mCustomTabViews;
+    // Detached default tab used to compute widths of tabs from their titles
+    private TextView mMeasuringTabView;
+    private boolean mMeasuringTabViewResolved;
+    private final Runnable mRequestLayoutRunnable = new Runnable() {
+        @Override
+        public void run() {
+            requestLayout();
+        }
+    };
+
+    private int mTabCount;
+    // Intrinsic (wrap_content) widths of tabs and titles they were measured with,
+    // 0 if tab was never measured
+    private int[] mIntrinsicWidths = new int[0];
+    private CharSequence[] mIntrinsicWidthTitles = new CharSequence[0];
+    // Widths taken from saved state for the same titles, custom tab views aren't remeasured for them
+    private boolean[] mIntrinsicWidthsRestored = new boolean[0];
+    private int[] mTabLefts = new int[0];
+    private int[] mTabRights = new int[0];
+    private int mTotalTabsWidth;
+    // Intrinsic widths of tabs from saved state and hashes of titles they were measured with,
+    // used for tabs with matching titles instead of measuring them
+    private int[] mRestoredWidths;
+    private int[] mRestoredTitleHashes;
+
+    // Views of tabs in range [mFirstBoundPosition, mFirstBoundPosition + mBoundViews.size()),
+    // without recycling all tabs are bound and child index is equal to tab position
+    private final ArrayList<View> mBoundViews = new ArrayList<>();
+    private final ArrayList<View> mScrapViews = new ArrayList<>();
+    private int mFirstBoundPosition;
+    private int mSelectedTabPosition = -1;
+
+    // Drawn tabs have no views, their titles are drawn in onDraw() with cached ellipsized text
+    private boolean mDrawnTabsEnabled;
+    private TextPaint mDrawnTitlePaint;
+    private final Paint.FontMetrics mDrawnTitleFontMetrics = new Paint.FontMetrics();
+    private int mDrawnTitleColor;
+    private int mDrawnSelectedTitleColor;
+    private CharSequence[] mDrawnTitleSources = new CharSequence[0];
+    private CharSequence[] mDrawnTitles = new CharSequence[0];
+    private float[] mDrawnTitleWidths = new float[0];
+    private int[] mDrawnTitleSlotWidths = new int[0];
+    private int mFirstDrawnTab;
+    private int mLastDrawnTab = -1;
+    private OnTabClickListener mOnTabClickListener;
+    // Exposes drawn tabs to accessibility services as virtual views
+    private DrawnTabsAccessibilityHelper mAccessibilityHelper;
+    private final int mTouchSlop;
+    private int mTouchedTabPosition = -1;
+    private float mTouchDownX;
+
+    // Number of placeholders in mBoundViews
+    private int mPlaceholderCount;
+    private boolean mReplacePlaceholdersPosted;
+    private final Runnable mReplacePlaceholdersRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mReplacePlaceholdersPosted = false;
+            replacePlaceholders();
+        }
+    };
+
+    private PerformanceMetrics mPerformanceMetrics;
+    private int mMeasurePassesSinceLayout;
+
+    private boolean mBlockLayoutRequests;
+    private int mLastHeightMeasureSpec;
+    private int mPendingScrollCorrection;
+
     SlidingTabStrip(Context context) {
         this(context, null);
     }
@@ -77,176 +274,1542 @@ class SlidingTabStrip extends LinearLayout {
         mDividerHeight = DEFAULT_DIVIDER_HEIGHT;
         mDividerPaint = new Paint();
         mDividerPaint.setStrokeWidth((int) (DEFAULT_DIVIDER_THICKNESS_DIPS * density));
+
+        mBadgeWidth = (int) (BADGE_WIDTH_DIPS * density);
+        mBadgeHeight = (int) (BADGE_HEIGHT_DIPS * density);
+        mBadgeMargin = (int) (BADGE_MARGIN_DIPS * density);
+        mBadgePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        mBadgePaint.setColor(defaultColor);
+        mBadgeTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        mBadgeTextPaint.setColor(Color.WHITE);
+        mBadgeTextPaint.setTextAlign(Paint.Align.CENTER);
+        mBadgeTextPaint.setTextSize(BADGE_TEXT_SIZE_SP * getResources().getDisplayMetrics().scaledDensity);
+        Paint.FontMetrics badgeFontMetrics = new Paint.FontMetrics();
+        mBadgeTextPaint.getFontMetrics(badgeFontMetrics);
+        mBadgeTextBaselineOffset = -(badgeFontMetrics.ascent + badgeFontMetrics.descent) / 2f;
+
+        mEstimatedTabWidth = (int) (DEFAULT_ESTIMATED_TAB_WIDTH_DIPS * density);
+        mTouchSlop = ViewConfiguration.get(context).getScaledTouchSlop();
     }
 
-    void setCustomTabColorizer(SlidingTabLayout.TabColorizer customTabColorizer) {
-        mCustomTabColorizer = customTabColorizer;
-        invalidate();
+    void setTabViewBinder(TabViewBinder tabViewBinder) {
+        mTabViewBinder = tabViewBinder;
     }
 
-    void setSelectedIndicatorColors(int... colors) {
-        // Make sure that the custom colorizer is removed
-        mCustomTabColorizer = null;
-        mDefaultTabColorizer.setIndicatorColors(colors);
-        invalidate();
+    /**
+     * Sets the key of tabs appearance: text appearance for default tabs or layout id for custom
+     * ones. Cached intrinsic widths of tabs are valid only for the same title and appearance.
+     *
+     * @param customTabViews true if tabs are inflated from custom layout. Such tabs might change
+     *                       their content without changing of title, so they are remeasured
+     *                       whenever they request layout.
+     */
+    void setTabAppearanceKey(int appearanceKey, boolean customTabViews) {
+        if (mTabAppearanceKey != appearanceKey || mCustomTabViews != customTabViews) {
+            mTabAppearanceKey = appearanceKey;
+            mCustomTabViews = customTabViews;
+            mMeasuringTabView = null;
+            mMeasuringTabViewResolved = false;
+            mDrawnTitlePaint = null;
+            Arrays.fill(mIntrinsicWidths, 0);
+            Arrays.fill(mIntrinsicWidthTitles, null);
+            Arrays.fill(mIntrinsicWidthsRestored, false);
+            requestLayout();
+        }
     }
 
-    void setDividerColors(int... colors) {
-        // Make sure that the custom colorizer is removed
-        mCustomTabColorizer = null;
-        mDefaultTabColorizer.setDividerColors(colors);
-        invalidate();
+    void setRecyclingEnabled(boolean recyclingEnabled) {
+        if (mRecyclingEnabled != recyclingEnabled) {
+            removeAllTabViews();
+            mRecyclingEnabled = recyclingEnabled;
+        }
     }
 
-    void onViewPagerPageChanged(int position, float positionOffset) {
-        mSelectedPosition = position;
-        mSelectionOffset = positionOffset;
-        invalidate();
+    boolean isRecyclingEnabled() {
+        return mRecyclingEnabled;
     }
 
-    void markPositionAsSelected(int position) {
-        for (int i = 0; i < getChildCount(); i++) {
-            View view = getChildAt(i);
-            view.setSelected(i == position);
+    /**
+     * Enables drawing of default tabs without views. Must not be enabled for custom tab views.
+     */
+    void setDrawnTabsEnabled(boolean drawnTabsEnabled) {
+        if (mDrawnTabsEnabled != drawnTabsEnabled) {
+            removeAllTabViews();
+            mDrawnTabsEnabled = drawnTabsEnabled;
+            mDrawnTitlePaint = null;
+            Arrays.fill(mDrawnTitleSources, null);
+            mAccessibilityHelper = drawnTabsEnabled ? new DrawnTabsAccessibilityHelper() : null;
+            ViewCompat.setAccessibilityDelegate(this, mAccessibilityHelper);
         }
     }
 
-    @Override
-    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
-        if (getParent() instanceof SlidingTabLayout) {
-            SlidingTabLayout tabLayout = (SlidingTabLayout) getParent();
-            SlidingTabLayout.StretchOption stretchOption = tabLayout.getStretchOption();
-
-            int hMode = MeasureSpec.getMode(heightMeasureSpec);
-
-            int childCount = getChildCount();
-            int tabLayoutMeasuredWidth = tabLayout.getMeasuredWidth();
-            int fillChildWidth = childCount != 0 ? tabLayout.getMeasuredWidth() / childCount : 0;
-            for (int i = 0; i < childCount; i++) {
-                View child = getChildAt(i);
-                LayoutParams layoutParams = (LayoutParams) child.getLayoutParams();
-                switch (stretchOption) {
-                    case ALWAYS:
-                        layoutParams.width = fillChildWidth;
-                        break;
-                    case IF_LESS_THAN_3:
-                        layoutParams.width = childCount <= 3 ? fillChildWidth : LayoutParams.WRAP_CONTENT;
-                        break;
-                    case IF_POSSIBLE:
-                    case NONE:
-                        layoutParams.width = LayoutParams.WRAP_CONTENT;
-                        break;
+    boolean isDrawnTabsEnabled() {
+        return mDrawnTabsEnabled;
+    }
+
+    void setPerformanceMetrics(PerformanceMetrics performanceMetrics) {
+        mPerformanceMetrics = performanceMetrics;
+    }
+
+    void setOnTabClickListener(OnTabClickListener onTabClickListener) {
+        mOnTabClickListener = onTabClickListener;
+    }
+
+    void setRecyclingMargin(int recyclingMargin) {
+        int margin = Math.max(0, recyclingMargin);
+        if (mRecyclingMargin != margin) {
+            mRecyclingMargin = margin;
+            if (mRecyclingEnabled) {
+                requestLayout();
+            }
+        }
+    }
+
+    /**
+     * Removes all tabs including recycled views.
+     */
+    void removeAllTabViews() {
+        removeAllViews();
+        if (mIndicatorView != null) {
+            addView(mIndicatorView);
+        }
+        releaseTabViews(mBoundViews);
+        releaseTabViews(mScrapViews);
+        mTabCount = 0;
+        mSelectedTabPosition = -1;
+        mFirstBoundPosition = 0;
+    }
+
+    /**
+     * Notifies that titles of tabs in range have been changed, bound tabs will be rebound.
+     */
+    void onTabsChanged(int positionStart, int itemCount) {
+        int end = Math.min(positionStart + itemCount, mTabCount);
+        if (positionStart >= end) {
+            return;
+        }
+
+        if (mDrawnTabsEnabled) {
+            requestLayout();
+            invalidate();
+            mAccessibilityHelper.invalidateRoot();
+            return;
+        }
+
+        if (mRecyclingEnabled) {
+            // Widths of unbound tabs will be taken from cache or estimated
+            Arrays.fill(mIntrinsicWidths, positionStart, end, 0);
+            Arrays.fill(mIntrinsicWidthsRestored, positionStart, end, false);
+            precomputeUnknownWidths();
+        }
+        rebindBoundTabs(positionStart, end);
+    }
+
+    /**
+     * Notifies that tabs have been inserted at the given position.
+     */
+    void onTabsInserted(int positionStart, int itemCount) {
+        if (itemCount <= 0) {
+            return;
+        }
+
+        int count = mTabCount + itemCount;
+        if (mIntrinsicWidths.length < count) {
+            mIntrinsicWidths = Arrays.copyOf(mIntrinsicWidths, count);
+            mIntrinsicWidthTitles = Arrays.copyOf(mIntrinsicWidthTitles, count);
+            mIntrinsicWidthsRestored = Arrays.copyOf(mIntrinsicWidthsRestored, count);
+            mTabLefts = new int[count];
+            mTabRights = new int[count];
+        }
+        System.arraycopy(mIntrinsicWidths, positionStart, mIntrinsicWidths, positionStart + itemCount,
+                mTabCount - positionStart);
+        System.arraycopy(mIntrinsicWidthTitles, positionStart, mIntrinsicWidthTitles, positionStart + itemCount,
+                mTabCount - positionStart);
+        System.arraycopy(mIntrinsicWidthsRestored, positionStart, mIntrinsicWidthsRestored,
+                positionStart + itemCount, mTabCount - positionStart);
+        Arrays.fill(mIntrinsicWidths, positionStart, positionStart + itemCount, 0);
+        Arrays.fill(mIntrinsicWidthTitles, positionStart, positionStart + itemCount, null);
+        Arrays.fill(mIntrinsicWidthsRestored, positionStart, positionStart + itemCount, false);
+        mTabCount = count;
+        // Selected tab moves along with the tabs after it
+        if (mSelectedTabPosition >= positionStart) {
+            mSelectedTabPosition += itemCount;
+        }
+
+        if (mDrawnTabsEnabled) {
+            requestLayout();
+            invalidate();
+            mAccessibilityHelper.invalidateRoot();
+        } else if (mRecyclingEnabled) {
+            precomputeUnknownWidths();
+            rebindBoundTabs(positionStart, count);
+        } else {
+            for (int position = positionStart; position < positionStart + itemCount; position++) {
+                View tabView = obtainTabView(position);
+                mBoundViews.add(position, tabView);
+                addView(tabView, position);
+            }
+            updateTabPositions(positionStart + itemCount);
+        }
+    }
+
+    /**
+     * Notifies that tabs have been removed from the given position.
+     */
+    void onTabsRemoved(int positionStart, int itemCount) {
+        if (itemCount <= 0) {
+            return;
+        }
+
+        int count = mTabCount - itemCount;
+        System.arraycopy(mIntrinsicWidths, positionStart + itemCount, mIntrinsicWidths, positionStart,
+                count - positionStart);
+        System.arraycopy(mIntrinsicWidthTitles, positionStart + itemCount, mIntrinsicWidthTitles, positionStart,
+                count - positionStart);
+        System.arraycopy(mIntrinsicWidthsRestored, positionStart + itemCount, mIntrinsicWidthsRestored,
+                positionStart, count - positionStart);
+        Arrays.fill(mIntrinsicWidthTitles, count, mTabCount, null);
+        Arrays.fill(mIntrinsicWidthsRestored, count, mTabCount, false);
+        mTabCount = count;
+        // Selection of a removed tab is dropped, so a stale position is never marked as selected
+        if (mSelectedTabPosition >= positionStart + itemCount) {
+            mSelectedTabPosition -= itemCount;
+        } else if (mSelectedTabPosition >= positionStart) {
+            mSelectedTabPosition = -1;
+        }
+
+        if (mDrawnTabsEnabled) {
+            requestLayout();
+            invalidate();
+            mAccessibilityHelper.invalidateRoot();
+        } else if (mRecyclingEnabled) {
+            rebindBoundTabs(positionStart, count);
+        } else {
+            removeViews(positionStart, itemCount);
+            releaseTabViews(mBoundViews.subList(positionStart, positionStart + itemCount));
+            updateTabPositions(positionStart);
+        }
+    }
+
+    /**
+     * Passes detached views to the binder and clears {@code views}.
+     */
+    private void releaseTabViews(List<View> views) {
+        if (mTabViewBinder != null) {
+            for (int i = 0; i < views.size(); i++) {
+                View tabView = views.get(i);
+                if (tabView instanceof PlaceholderView) {
+                    mPlaceholderCount--;
+                } else {
+                    mTabViewBinder.releaseTabView(tabView);
                 }
-                if (layoutParams.height < 0) {
-                    if (hMode == MeasureSpec.EXACTLY) {
-                        layoutParams.height = ViewGroup.LayoutParams.MATCH_PARENT;
-                    } else {
-                        layoutParams.height = ViewGroup.LayoutParams.WRAP_CONTENT;
-                    }
+            }
+        }
+        views.clear();
+    }
+
+    private void rebindBoundTabs(int positionStart, int positionEnd) {
+        mBlockLayoutRequests = true;
+        try {
+            while (!mBoundViews.isEmpty()
+                    && mFirstBoundPosition + mBoundViews.size() > mTabCount) {
+                recycleTabView(mBoundViews.remove(mBoundViews.size() - 1));
+            }
+            int start = Math.max(positionStart, mFirstBoundPosition);
+            int end = Math.min(positionEnd, mFirstBoundPosition + mBoundViews.size());
+            for (int position = start; position < end; position++) {
+                bindTabView(mBoundViews.get(position - mFirstBoundPosition), position);
+            }
+        } finally {
+            mBlockLayoutRequests = false;
+        }
+        requestLayout();
+        invalidate();
+    }
+
+    /**
+     * Starts background computation of widths of default tabs that aren't cached yet. Layout will
+     * be requested when they are ready.
+     */
+    private void precomputeUnknownWidths() {
+        TextView measuringTabView = getMeasuringTabView();
+        if (measuringTabView == null) {
+            return;
+        }
+
+        int unknownCount = 0;
+        for (int i = 0; i < mTabCount; i++) {
+            if (mIntrinsicWidths[i] == 0 && !mTabViewBinder.isTabTitlePending(i)
+                    && TabWidthCache.getWidth(mTabViewBinder.getTabTitle(i), measuringTabView) < 0) {
+                unknownCount++;
+            }
+        }
+        if (unknownCount == 0) {
+            return;
+        }
+
+        CharSequence[] titles = new CharSequence[unknownCount];
+        for (int i = 0, j = 0; i < mTabCount && j < unknownCount; i++) {
+            if (mIntrinsicWidths[i] != 0 || mTabViewBinder.isTabTitlePending(i)) {
+                continue;
+            }
+            CharSequence title = mTabViewBinder.getTabTitle(i);
+            if (TabWidthCache.getWidth(title, measuringTabView) < 0) {
+                titles[j++] = title;
+            }
+        }
+        TabWidthCache.precompute(titles, measuringTabView, mRequestLayoutRunnable);
+    }
+
+    private TextView getMeasuringTabView() {
+        if (!mMeasuringTabViewResolved && !mCustomTabViews && mTabViewBinder != null) {
+            View tabView = mTabViewBinder.createMeasuringTabView();
+            mMeasuringTabView = tabView instanceof TextView ? (TextView) tabView : null;
+            mMeasuringTabViewResolved = true;
+        }
+        return mCustomTabViews ? null : mMeasuringTabView;
+    }
+
+    private void fillCachedIntrinsicWidths() {
+        TextView measuringTabView = getMeasuringTabView();
+        if (measuringTabView == null) {
+            return;
+        }
+
+        for (int i = 0; i < mTabCount; i++) {
+            if (mIntrinsicWidths[i] == 0 && !mTabViewBinder.isTabTitlePending(i)) {
+                CharSequence title = mTabViewBinder.getTabTitle(i);
+                int width = TabWidthCache.getWidth(title, measuringTabView);
+                if (width > 0) {
+                    mIntrinsicWidths[i] = width;
+                    mIntrinsicWidthTitles[i] = title;
                 }
-                child.forceLayout();
             }
+        }
+    }
+
+    private void updateTabPositions(int positionStart) {
+        for (int i = Math.max(0, positionStart - mFirstBoundPosition); i < mBoundViews.size(); i++) {
+            mBoundViews.get(i).setTag(R.id.stl_tab_position, mFirstBoundPosition + i);
+        }
+    }
+
+    /**
+     * Fills intrinsic widths of tabs and hashes of titles they were measured with, width is 0 if
+     * it's unknown. Arrays must have at least {@link #getTabCount()} elements.
+     */
+    void getMeasuredTabWidths(int[] widths, int[] titleHashes) {
+        for (int i = 0; i < mTabCount; i++) {
+            CharSequence title = mIntrinsicWidthTitles[i];
+            if (title == null && mRestoredWidths != null && i < mRestoredWidths.length && mRestoredWidths[i] > 0) {
+                // Restored width of a pending title hasn't been checked yet
+                widths[i] = mRestoredWidths[i];
+                titleHashes[i] = mRestoredTitleHashes[i];
+                continue;
+            }
+            // Widths of placeholders are estimated and have no title
+            widths[i] = title != null ? mIntrinsicWidths[i] : 0;
+            titleHashes[i] = hashTitle(title);
+        }
+    }
 
-            super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+    /**
+     * Sets intrinsic widths of tabs from saved state, they are used on measure for tabs with the
+     * same titles. Widths must be measured with the same tab appearance and configuration.
+     */
+    void setRestoredTabWidths(int[] widths, int[] titleHashes) {
+        // Entries are cleared once they are used
+        mRestoredWidths = widths.clone();
+        mRestoredTitleHashes = titleHashes;
+        requestLayout();
+    }
+
+    /**
+     * Applies restored widths to tabs with the same titles. Tabs with pending titles take the
+     * restored width of their position until the title comes and is checked against the hash.
+     */
+    private void applyRestoredTabWidths() {
+        if (mRestoredWidths == null) {
+            return;
+        }
+
+        boolean titlesPending = false;
+        int count = Math.min(mTabCount, mRestoredWidths.length);
+        for (int i = 0; i < count; i++) {
+            if (mRestoredWidths[i] <= 0) {
+                continue;
+            }
 
-            if (stretchOption == SlidingTabLayout.StretchOption.IF_POSSIBLE) {
-                int totalWidth = 0;
-                int maxWidth = 0;
-                for (int i = 0; i < childCount; i++) {
-                    int childWidth = getChildAt(i).getMeasuredWidth();
-                    maxWidth = Math.max(childWidth, maxWidth);
-                    totalWidth += childWidth;
+            if (mTabViewBinder.isTabTitlePending(i)) {
+                if (mIntrinsicWidths[i] == 0) {
+                    mIntrinsicWidths[i] = mRestoredWidths[i];
+                    mIntrinsicWidthTitles[i] = null;
                 }
+                titlesPending = true;
+                continue;
+            }
 
-                if (totalWidth < tabLayoutMeasuredWidth) {
-                    int childrenWithMaxWidthSize = maxWidth * childCount;
-                    int childWidthExtra = childCount > 0 ? (tabLayoutMeasuredWidth - totalWidth) / childCount : 0;
-                    for (int i = 0; i < childCount; i++) {
-                        View child = getChildAt(i);
-                        LayoutParams layoutParams = (LayoutParams) child.getLayoutParams();
-                        if (childrenWithMaxWidthSize < tabLayoutMeasuredWidth) {
-                            layoutParams.width = fillChildWidth;
-                        } else {
-                            layoutParams.width = child.getMeasuredWidth() + childWidthExtra;
-                        }
-                        child.forceLayout();
-                    }
-                    super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+            if (mIntrinsicWidths[i] == 0 || mIntrinsicWidthTitles[i] == null) {
+                CharSequence title = mTabViewBinder.getTabTitle(i);
+                if (hashTitle(title) == mRestoredTitleHashes[i]) {
+                    mIntrinsicWidths[i] = mRestoredWidths[i];
+                    mIntrinsicWidthTitles[i] = title;
+                    mIntrinsicWidthsRestored[i] = true;
+                } else if (mIntrinsicWidthTitles[i] == null) {
+                    // Width was restored or estimated while the title was pending
+                    mIntrinsicWidths[i] = 0;
                 }
             }
-        } else {
-            super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+            mRestoredWidths[i] = 0;
+        }
+        if (mTabCount >= mRestoredWidths.length && !titlesPending) {
+            // Tabs which are added later are measured as usual
+            mRestoredWidths = null;
+            mRestoredTitleHashes = null;
         }
     }
 
-    @Override
-    protected void onDraw(Canvas canvas) {
-        final int height = getHeight();
-        final int childCount = getChildCount();
-        final int dividerHeightPx = (int) (Math.min(Math.max(0f, mDividerHeight), 1f) * height);
-        final SlidingTabLayout.TabColorizer tabColorizer = mCustomTabColorizer != null
-                ? mCustomTabColorizer
-                : mDefaultTabColorizer;
+    private static int hashTitle(CharSequence title) {
+        return title != null ? title.toString().hashCode() : 0;
+    }
 
-        // Thick colored underline below the current selection
-        if (childCount > 0) {
-            View selectedTitle = getChildAt(mSelectedPosition);
-            int left = selectedTitle.getLeft();
-            int right = selectedTitle.getRight();
-            int color = tabColorizer.getIndicatorColor(mSelectedPosition);
-
-            if (mSelectionOffset > 0f && mSelectedPosition < (getChildCount() - 1)) {
-                int nextColor = tabColorizer.getIndicatorColor(mSelectedPosition + 1);
-                if (color != nextColor) {
-                    color = blendColors(nextColor, color, mSelectionOffset);
+    int getSelectedTabPosition() {
+        return mSelectedTabPosition;
+    }
+
+    int getTabCount() {
+        return mTabCount;
+    }
+
+    int getTabLeft(int position) {
+        return mTabLefts[position];
+    }
+
+    int getTabRight(int position) {
+        return mTabRights[position];
+    }
+
+    /**
+     * Called by {@link SlidingTabLayout} when it has been scrolled. In recycling mode binds tabs
+     * that became visible and recycles the ones that went out of the viewport.
+     */
+    void onViewportChanged() {
+        if (mDrawnTabsEnabled) {
+            // Titles are drawn with a margin around the viewport, redraw when it's passed
+            if (mTabCount > 0 && getParent() instanceof SlidingTabLayout) {
+                SlidingTabLayout tabLayout = (SlidingTabLayout) getParent();
+                int first = findFirstTabAfter(tabLayout.getScrollX());
+                int last = findLastTabBefore(tabLayout.getScrollX() + tabLayout.getWidth());
+                if (first < mFirstDrawnTab || last > mLastDrawnTab) {
+                    invalidate();
                 }
+            }
+            return;
+        }
+
+        if (!mRecyclingEnabled || mTabCount == 0 || isLayoutRequested()) {
+            return;
+        }
 
-                // Draw the selection partway between the tabs
-                View nextTitle = getChildAt(mSelectedPosition + 1);
-                left = (int) (mSelectionOffset * nextTitle.getLeft() +
-                        (1.0f - mSelectionOffset) * left);
-                right = (int) (mSelectionOffset * nextTitle.getRight() +
-                        (1.0f - mSelectionOffset) * right);
+        int firstBoundPosition = mFirstBoundPosition;
+        int boundCount = mBoundViews.size();
+        boolean widthsChanged;
+        boolean boundTabsChanged;
+        mBlockLayoutRequests = true;
+        try {
+            widthsChanged = updateBoundTabs(mLastHeightMeasureSpec);
+            boundTabsChanged = mFirstBoundPosition != firstBoundPosition || mBoundViews.size() != boundCount;
+            if (!widthsChanged && boundTabsChanged) {
+                measureBoundTabs(mLastHeightMeasureSpec);
+                layoutBoundTabs();
             }
+        } finally {
+            mBlockLayoutRequests = false;
+        }
+
+        if (widthsChanged) {
+            requestLayout();
+        }
+        // Scroll alone doesn't change the strip, only binding of tabs and dividers around them do
+        if (widthsChanged || boundTabsChanged) {
+            invalidate();
+        }
+    }
 
-            mSelectedIndicatorPaint.setColor(color);
+    @Override
+    public void requestLayout() {
+        if (!mBlockLayoutRequests) {
+            super.requestLayout();
+        }
+    }
 
-            canvas.drawRect(left, height - mSelectedIndicatorThickness, right,
-                    height, mSelectedIndicatorPaint);
+    void setCustomTabColorizer(SlidingTabLayout.TabColorizer customTabColorizer) {
+        mCustomTabColorizer = customTabColorizer;
+        mGradientPosition = -1;
+        mDividersDirty = true;
+        invalidate();
+        updateIndicatorView();
+    }
+
+    void setSelectedIndicatorColors(int... colors) {
+        // Make sure that the custom colorizer is removed
+        mCustomTabColorizer = null;
+        mGradientPosition = -1;
+        mDividersDirty = true;
+        mDefaultTabColorizer.setIndicatorColors(colors);
+        invalidate();
+        updateIndicatorView();
+    }
+
+    /**
+     * Enables indicator drawn by a separate child view. The view is moved with
+     * {@code translationX} and stretched with {@code scaleX}, so its movement doesn't invalidate
+     * the strip.
+     */
+    void setIndicatorViewEnabled(boolean indicatorViewEnabled) {
+        if (isIndicatorViewEnabled() == indicatorViewEnabled) {
+            return;
         }
 
-        // Thin underline along the entire bottom edge
-        canvas.drawRect(0, height - mBottomBorderThickness, getWidth(), height, mBottomBorderPaint);
+        if (indicatorViewEnabled) {
+            mIndicatorView = new View(getContext());
+            mIndicatorView.setPivotX(0);
+            // Indicator is always the last child, tabs are inserted before it
+            addView(mIndicatorView);
+        } else {
+            removeView(mIndicatorView);
+            mIndicatorView = null;
+        }
+        setChildrenDrawingOrderEnabled(indicatorViewEnabled);
+        invalidate();
+    }
+
+    boolean isIndicatorViewEnabled() {
+        return mIndicatorView != null;
+    }
 
-        // Vertical separators between the titles
-        int separatorTop = (height - dividerHeightPx) / 2;
-        for (int i = 0; i < childCount - 1; i++) {
-            View child = getChildAt(i);
-            mDividerPaint.setColor(tabColorizer.getDividerColor(i));
-            canvas.drawLine(child.getRight(), separatorTop, child.getRight(),
-                    separatorTop + dividerHeightPx, mDividerPaint);
+    private void updateIndicatorView() {
+        if (mIndicatorView == null || mIndicatorView.getWidth() == 0) {
+            return;
         }
+
+        updateIndicator();
+        int width = mIndicator.right - mIndicator.left;
+        mIndicatorView.setVisibility(width > 0 ? VISIBLE : INVISIBLE);
+        mIndicatorView.setTranslationX(mIndicator.left);
+        mIndicatorView.setScaleX((float) width / mIndicatorView.getWidth());
+        // Updates color of the existing ColorDrawable, so there is no allocation
+        mIndicatorView.setBackgroundColor(mIndicatorColor);
     }
 
     /**
-     * Set the alpha value of the {@code color} to be the given {@code alpha} value.
+     * Puts the strip into a hardware layer while pager is dragged or settling. The indicator is
+     * drawn by {@link SlidingTabLayout} with {@link #drawIndicator(Canvas)} meanwhile. Has no
+     * effect if indicator view is enabled or if the strip isn't hardware accelerated.
      */
-    private static int setColorAlpha(int color, byte alpha) {
-        return Color.argb(alpha, Color.red(color), Color.green(color), Color.blue(color));
+    void setDragLayerActive(boolean active) {
+        active = active && mIndicatorView == null && isHardwareAccelerated();
+        if (mDragLayerActive == active) {
+            return;
+        }
+
+        mDragLayerActive = active;
+        ViewCompat.setLayerType(this, active ? LAYER_TYPE_HARDWARE : LAYER_TYPE_NONE, null);
+        invalidate();
+        if (getParent() instanceof View) {
+            ((View) getParent()).invalidate();
+        }
+    }
+
+    boolean isDragLayerActive() {
+        return mDragLayerActive;
     }
 
     /**
-     * Blend {@code color1} and {@code color2} using the given ratio.
-     *
-     * @param ratio of which to blend. 1.0 will return {@code color1}, 0.5 will give an even blend,
-     *              0.0 will return {@code color2}.
+     * Indicator view is drawn over all tabs whatever its index is.
+     */
+    @Override
+    protected int getChildDrawingOrder(int childCount, int i) {
+        int indicatorIndex = mIndicatorView != null ? indexOfChild(mIndicatorView) : -1;
+        if (indicatorIndex < 0) {
+            return i;
+        }
+        if (i == childCount - 1) {
+            return indicatorIndex;
+        }
+        return i < indicatorIndex ? i : i + 1;
+    }
+
+    /**
+     * Sets count shown in the badge of tab at {@code position}, 0 hides the badge. Only the
+     * badge slot is invalidated.
      */
-    private static int blendColors(int color1, int color2, float ratio) {
-        final float inverseRation = 1f - ratio;
-        float r = (Color.red(color1) * ratio) + (Color.red(color2) * inverseRation);
-        float g = (Color.green(color1) * ratio) + (Color.green(color2) * inverseRation);
-        float b = (Color.blue(color1) * ratio) + (Color.blue(color2) * inverseRation);
-        return Color.rgb((int) r, (int) g, (int) b);
+    void setTabBadge(int position, int count) {
+        if (position < 0) {
+            throw new IllegalArgumentException("Negative tab position: " + position);
+        }
+
+        count = Math.max(0, count);
+        if (position >= mBadgeCounts.length) {
+            if (count == 0) {
+                return;
+            }
+            mBadgeCounts = Arrays.copyOf(mBadgeCounts, Math.max(position + 1, mTabCount));
+        }
+        int oldCount = mBadgeCounts[position];
+        if (oldCount == count) {
+            return;
+        }
+
+        mBadgeCounts[position] = count;
+        mBadgedTabCount += (count > 0 ? 1 : 0) - (oldCount > 0 ? 1 : 0);
+        invalidateBadge(position);
+    }
+
+    int getTabBadge(int position) {
+        return position >= 0 && position < mBadgeCounts.length ? mBadgeCounts[position] : 0;
+    }
+
+    void clearTabBadges() {
+        if (mBadgedTabCount > 0) {
+            Arrays.fill(mBadgeCounts, 0);
+            mBadgedTabCount = 0;
+            invalidate();
+        }
+    }
+
+    void setTabBadgeColors(int backgroundColor, int textColor) {
+        mBadgePaint.setColor(backgroundColor);
+        mBadgeTextPaint.setColor(textColor);
+        if (mBadgedTabCount > 0) {
+            invalidate();
+        }
+    }
+
+    private void invalidateBadge(int position) {
+        if (position < mTabCount && position < mTabRights.length
+                && mTabRights[position] > mTabLefts[position]) {
+            computeBadgeRect(position, mBadgeRect);
+            invalidate((int) mBadgeRect.left, (int) mBadgeRect.top,
+                    (int) Math.ceil(mBadgeRect.right), (int) Math.ceil(mBadgeRect.bottom));
+        }
+    }
+
+    private void computeBadgeRect(int position, RectF rect) {
+        float right = mTabRights[position] - mBadgeMargin;
+        float top = getPaddingTop() + mBadgeMargin;
+        rect.set(right - mBadgeWidth, top, right, top + mBadgeHeight);
+    }
+
+    void setDividerColors(int... colors) {
+        // Make sure that the custom colorizer is removed
+        mCustomTabColorizer = null;
+        mDividersDirty = true;
+        mDefaultTabColorizer.setDividerColors(colors);
+        invalidate();
+    }
+
+    /**
+     * Moves the selection indicator. Called on every scroll frame, so it must not allocate. Only
+     * the area covered by the old and the new indicator bounds is invalidated.
+     */
+    void onViewPagerPageChanged(int position, float positionOffset) {
+        if (mSelectedPosition == position && mSelectionOffset == positionOffset) {
+            return;
+        }
+
+        int oldLeft = mIndicator.left;
+        int oldRight = mIndicator.right;
+        mSelectedPosition = position;
+        mSelectionOffset = positionOffset;
+        if (mIndicatorView != null) {
+            updateIndicatorView();
+            return;
+        }
+        updateIndicator();
+
+        final int height = getHeight();
+        if (mDragLayerActive && getParent() instanceof View) {
+            // Don't invalidate the layer, indicator is drawn by the parent
+            ((View) getParent()).invalidate(getLeft() + Math.min(oldLeft, mIndicator.left),
+                    getTop() + height - mSelectedIndicatorThickness,
+                    getLeft() + Math.max(oldRight, mIndicator.right), getTop() + height);
+        } else {
+            invalidate(Math.min(oldLeft, mIndicator.left), height - mSelectedIndicatorThickness,
+                    Math.max(oldRight, mIndicator.right), height);
+        }
+    }
+
+    /**
+     * Computes {@link #mIndicator} bounds and {@link #mIndicatorColor} from
+     * the selected position and offset.
+     */
+    private void updateIndicator() {
+        final int tabCount = mTabCount;
+        TabLayoutEngine.computeIndicator(mTabLefts, mTabRights, tabCount, mSelectedPosition, mSelectionOffset,
+                mIndicator);
+        if (tabCount == 0 || mSelectedPosition >= tabCount) {
+            return;
+        }
+
+        final SlidingTabLayout.TabColorizer tabColorizer = mCustomTabColorizer != null
+                ? mCustomTabColorizer
+                : mDefaultTabColorizer;
+        int color = tabColorizer.getIndicatorColor(mSelectedPosition);
+        if (mSelectionOffset > 0f && mSelectedPosition < (tabCount - 1)) {
+            int nextColor = tabColorizer.getIndicatorColor(mSelectedPosition + 1);
+            if (color != nextColor) {
+                if (mGradientPosition != mSelectedPosition
+                        || mGradient[0] != color || mGradient[GRADIENT_STEPS] != nextColor) {
+                    TabLayoutEngine.fillGradient(color, nextColor, mGradient);
+                    mGradientPosition = mSelectedPosition;
+                }
+                color = mGradient[Math.round(mSelectionOffset * GRADIENT_STEPS)];
+            }
+        }
+        mIndicatorColor = color;
+    }
+
+    /**
+     * Updates selected state of previously selected and newly selected tabs only.
+     */
+    void markPositionAsSelected(int position) {
+        int oldPosition = mSelectedTabPosition;
+        if (oldPosition == position) {
+            return;
+        }
+
+        mSelectedTabPosition = position;
+        if (mDrawnTabsEnabled) {
+            invalidate();
+            mAccessibilityHelper.invalidateRoot();
+            return;
+        }
+        View oldTabView = getBoundTabView(oldPosition);
+        if (oldTabView != null) {
+            oldTabView.setSelected(false);
+        }
+        View tabView = getBoundTabView(position);
+        if (tabView != null) {
+            tabView.setSelected(true);
+        }
+    }
+
+    private View getBoundTabView(int position) {
+        int index = position - mFirstBoundPosition;
+        return index >= 0 && index < mBoundViews.size() ? mBoundViews.get(index) : null;
+    }
+
+    /**
+     * Measures tabs in a single pass: intrinsic width of a tab is measured only if it's not cached
+     * for its title, stretched widths are computed from intrinsic ones, and then each tab is
+     * measured with its final width.
+     */
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        if (!(getParent() instanceof SlidingTabLayout)) {
+            super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+            return;
+        }
+
+        SlidingTabLayout tabLayout = (SlidingTabLayout) getParent();
+        if (mPerformanceMetrics != null) {
+            mPerformanceMetrics.onMeasurePass(mMeasurePassesSinceLayout > 0);
+        }
+        mMeasurePassesSinceLayout++;
+        Tracing.beginMeasureSection(tabLayout.getStretchOption(), mMeasurePassesSinceLayout);
+        try {
+            measureTabs(tabLayout, widthMeasureSpec, heightMeasureSpec);
+        } finally {
+            Tracing.endSection();
+        }
+    }
+
+    private void measureTabs(SlidingTabLayout tabLayout, int widthMeasureSpec, int heightMeasureSpec) {
+        mLastHeightMeasureSpec = heightMeasureSpec;
+        applyRestoredTabWidths();
+
+        // Keep first visible tab in place if widths of tabs before it will change
+        int anchorPosition = mRecyclingEnabled && !mBoundViews.isEmpty()
+                ? findFirstTabAfter(tabLayout.getScrollX())
+                : -1;
+        int anchorLeft = anchorPosition >= 0 ? mTabLefts[anchorPosition] : 0;
+
+        SlidingTabLayout.StretchOption stretchOption = tabLayout.getStretchOption();
+        int availableWidth = tabLayout.getMeasuredWidth();
+        mBlockLayoutRequests = true;
+        try {
+            if (mDrawnTabsEnabled) {
+                measureDrawnTabs();
+                computeTabBounds(stretchOption, availableWidth);
+            } else if (mRecyclingEnabled) {
+                fillCachedIntrinsicWidths();
+                boolean widthsChanged = true;
+                for (int i = 0; widthsChanged && i < MAX_RECYCLING_MEASURE_ITERATIONS; i++) {
+                    computeTabBounds(stretchOption, availableWidth);
+                    widthsChanged = updateBoundTabs(heightMeasureSpec);
+                }
+                if (widthsChanged) {
+                    computeTabBounds(stretchOption, availableWidth);
+                }
+            } else {
+                for (int position = 0; position < mTabCount; position++) {
+                    updateIntrinsicWidth(mBoundViews.get(position), position, heightMeasureSpec);
+                }
+                computeTabBounds(stretchOption, availableWidth);
+            }
+            measureBoundTabs(heightMeasureSpec);
+        } finally {
+            mBlockLayoutRequests = false;
+        }
+
+        if (anchorPosition > 0 && anchorPosition < mTabCount) {
+            mPendingScrollCorrection = mTabLefts[anchorPosition] - anchorLeft;
+        }
+
+        int height;
+        if (MeasureSpec.getMode(heightMeasureSpec) == MeasureSpec.EXACTLY) {
+            height = MeasureSpec.getSize(heightMeasureSpec);
+        } else if (mDrawnTabsEnabled) {
+            TextView measuringTabView = getMeasuringTabView();
+            int textHeight = measuringTabView != null
+                    ? (int) Math.ceil(mDrawnTitleFontMetrics.descent - mDrawnTitleFontMetrics.ascent)
+                    + measuringTabView.getCompoundPaddingTop() + measuringTabView.getCompoundPaddingBottom()
+                    : 0;
+            height = resolveSize(textHeight + getPaddingTop() + getPaddingBottom(), heightMeasureSpec);
+        } else {
+            int maxChildHeight = 0;
+            for (int i = 0; i < mBoundViews.size(); i++) {
+                maxChildHeight = Math.max(maxChildHeight, mBoundViews.get(i).getMeasuredHeight());
+            }
+            height = resolveSize(maxChildHeight + getPaddingTop() + getPaddingBottom(), heightMeasureSpec);
+        }
+        if (mIndicatorView != null) {
+            mIndicatorView.measure(MeasureSpec.makeMeasureSpec(mEstimatedTabWidth, MeasureSpec.EXACTLY),
+                    MeasureSpec.makeMeasureSpec(mSelectedIndicatorThickness, MeasureSpec.EXACTLY));
+        }
+        setMeasuredDimension(
+                resolveSize(mTotalTabsWidth + getPaddingLeft() + getPaddingRight(), widthMeasureSpec),
+                height);
+    }
+
+    private void measureDrawnTabs() {
+        TextView measuringTabView = getMeasuringTabView();
+        if (measuringTabView == null) {
+            return;
+        }
+
+        if (mDrawnTitlePaint == null) {
+            mDrawnTitlePaint = new TextPaint(measuringTabView.getPaint());
+            mDrawnTitlePaint.getFontMetrics(mDrawnTitleFontMetrics);
+            ColorStateList textColors = measuringTabView.getTextColors();
+            mDrawnTitleColor = textColors.getColorForState(DRAWN_TAB_STATE, textColors.getDefaultColor());
+            mDrawnSelectedTitleColor = textColors.getColorForState(DRAWN_SELECTED_TAB_STATE, mDrawnTitleColor);
+        }
+        if (mDrawnTitles.length < mTabCount) {
+            mDrawnTitleSources = Arrays.copyOf(mDrawnTitleSources, mTabCount);
+            mDrawnTitles = Arrays.copyOf(mDrawnTitles, mTabCount);
+            mDrawnTitleWidths = Arrays.copyOf(mDrawnTitleWidths, mTabCount);
+            mDrawnTitleSlotWidths = Arrays.copyOf(mDrawnTitleSlotWidths, mTabCount);
+        }
+
+        for (int position = 0; position < mTabCount; position++) {
+            if (mTabViewBinder.isTabTitlePending(position)) {
+                if (mIntrinsicWidths[position] == 0) {
+                    mIntrinsicWidths[position] = mEstimatedTabWidth;
+                    mIntrinsicWidthTitles[position] = null;
+                }
+                continue;
+            }
+            CharSequence title = mTabViewBinder.getTabTitle(position);
+            if (mIntrinsicWidths[position] == 0
+                    || !TextUtils.equals(mIntrinsicWidthTitles[position], title)) {
+                int width = TabWidthCache.measureWidth(title, measuringTabView);
+                if (width < 0) {
+                    // Drawn titles are drawn without spans
+                    width = TabWidthCache.measureWidth(title.toString(), measuringTabView);
+                }
+                mIntrinsicWidths[position] = Math.max(1, width);
+                mIntrinsicWidthTitles[position] = title;
+            }
+        }
+    }
+
+    /**
+     * Fills {@link #mTabLefts} and {@link #mTabRights} from intrinsic widths of tabs. Width of a
+     * tab that was never measured is estimated as an average width of known ones.
+     */
+    private void computeTabBounds(SlidingTabLayout.StretchOption stretchOption, int availableWidth) {
+        mTotalTabsWidth = TabLayoutEngine.computeTabBounds(mIntrinsicWidths, mTabCount, mEstimatedTabWidth,
+                toEngineStretch(stretchOption), availableWidth, getPaddingLeft(), mTabLefts, mTabRights);
+    }
+
+    private static int toEngineStretch(SlidingTabLayout.StretchOption stretchOption) {
+        switch (stretchOption) {
+            case IF_LESS_THAN_3:
+                return TabLayoutEngine.STRETCH_IF_LESS_THAN_3;
+            case IF_POSSIBLE:
+                return TabLayoutEngine.STRETCH_IF_POSSIBLE;
+            case ALWAYS:
+                return TabLayoutEngine.STRETCH_ALWAYS;
+            default:
+                return TabLayoutEngine.STRETCH_NONE;
+        }
+    }
+
+    /**
+     * Binds tabs intersecting the viewport of {@link SlidingTabLayout} extended by recycling margin
+     * and recycles all others.
+     *
+     * @return true if intrinsic width of any newly bound tab differs from the known one
+     */
+    private boolean updateBoundTabs(int heightMeasureSpec) {
+        if (mTabCount == 0 || !(getParent() instanceof SlidingTabLayout)) {
+            while (!mBoundViews.isEmpty()) {
+                recycleTabView(mBoundViews.remove(mBoundViews.size() - 1));
+            }
+            mFirstBoundPosition = 0;
+            return false;
+        }
+
+        SlidingTabLayout tabLayout = (SlidingTabLayout) getParent();
+        int viewportStart = tabLayout.getScrollX() - mRecyclingMargin;
+        int viewportEnd = tabLayout.getScrollX() + tabLayout.getMeasuredWidth() + mRecyclingMargin;
+        int first = findFirstTabAfter(viewportStart);
+        int last = Math.max(first, findLastTabBefore(viewportEnd));
+
+        while (!mBoundViews.isEmpty() && mFirstBoundPosition < first) {
+            recycleTabView(mBoundViews.remove(0));
+            mFirstBoundPosition++;
+        }
+        while (!mBoundViews.isEmpty() && mFirstBoundPosition + mBoundViews.size() - 1 > last) {
+            recycleTabView(mBoundViews.remove(mBoundViews.size() - 1));
+        }
+        if (mBoundViews.isEmpty()) {
+            mFirstBoundPosition = first;
+        }
+
+        boolean widthsChanged = false;
+        while (mFirstBoundPosition > first) {
+            mFirstBoundPosition--;
+            View tabView = obtainTabViewInLayout(mFirstBoundPosition);
+            mBoundViews.add(0, tabView);
+            widthsChanged |= updateIntrinsicWidth(tabView, mFirstBoundPosition, heightMeasureSpec);
+        }
+        for (int position = mFirstBoundPosition + mBoundViews.size(); position <= last; position++) {
+            View tabView = obtainTabViewInLayout(position);
+            mBoundViews.add(tabView);
+            widthsChanged |= updateIntrinsicWidth(tabView, position, heightMeasureSpec);
+        }
+        return widthsChanged;
+    }
+
+    private int findFirstTabAfter(int x) {
+        int low = 0;
+        int high = mTabCount - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (mTabRights[mid] <= x) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return Math.max(0, low);
+    }
+
+    private int findLastTabBefore(int x) {
+        int low = 0;
+        int high = mTabCount - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (mTabLefts[mid] >= x) {
+                high = mid - 1;
+            } else {
+                low = mid;
+            }
+        }
+        return Math.max(0, low);
+    }
+
+    private View obtainTabView(int position) {
+        View tabView;
+        if (mScrapViews.isEmpty()) {
+            tabView = mTabViewBinder.createTabView();
+        } else {
+            tabView = mScrapViews.remove(mScrapViews.size() - 1);
+            if (mPerformanceMetrics != null) {
+                mPerformanceMetrics.onTabReused();
+            }
+        }
+        if (tabView == null) {
+            tabView = new PlaceholderView(getContext());
+            mPlaceholderCount++;
+            mTabViewBinder.requestTabViews(mPlaceholderCount);
+        }
+        bindTabView(tabView, position);
+        return tabView;
+    }
+
+    /**
+     * Notifies that binder has new tab views, placeholders will be replaced with them in batches,
+     * at most {@link #MAX_PLACEHOLDERS_REPLACED_PER_FRAME} per frame.
+     */
+    void onTabViewsAvailable() {
+        if (!mReplacePlaceholdersPosted) {
+            mReplacePlaceholdersPosted = true;
+            ViewCompat.postOnAnimation(this, mReplacePlaceholdersRunnable);
+        }
+    }
+
+    private void replacePlaceholders() {
+        int replaced = 0;
+        boolean hasMorePlaceholders = false;
+        for (int i = 0; i < mBoundViews.size(); i++) {
+            View placeholder = mBoundViews.get(i);
+            if (!(placeholder instanceof PlaceholderView)) {
+                continue;
+            }
+            if (replaced == MAX_PLACEHOLDERS_REPLACED_PER_FRAME) {
+                hasMorePlaceholders = true;
+                break;
+            }
+
+            View tabView = mTabViewBinder.createTabView();
+            if (tabView == null) {
+                // Views were requested along with placeholders, next ones will come with another
+                // onTabViewsAvailable() call
+                break;
+            }
+            bindTabView(tabView, mFirstBoundPosition + i);
+            ViewGroup.LayoutParams layoutParams = tabView.getLayoutParams();
+            if (layoutParams == null) {
+                layoutParams = generateDefaultLayoutParams();
+            }
+            int index = indexOfChild(placeholder);
+            removeViewInLayout(placeholder);
+            addViewInLayout(tabView, index, layoutParams, true);
+            mBoundViews.set(i, tabView);
+            mPlaceholderCount--;
+            replaced++;
+        }
+
+        if (replaced > 0) {
+            requestLayout();
+            invalidate();
+        }
+        if (hasMorePlaceholders) {
+            onTabViewsAvailable();
+        }
+    }
+
+    private View obtainTabViewInLayout(int position) {
+        View tabView = obtainTabView(position);
+        ViewGroup.LayoutParams layoutParams = tabView.getLayoutParams();
+        if (layoutParams == null) {
+            layoutParams = generateDefaultLayoutParams();
+        }
+        addViewInLayout(tabView, -1, layoutParams, true);
+        return tabView;
+    }
+
+    private void bindTabView(View tabView, int position) {
+        if (!(tabView instanceof PlaceholderView)) {
+            mTabViewBinder.bindTabView(tabView, position);
+        }
+        tabView.setTag(R.id.stl_tab_position, position);
+        tabView.setSelected(position == mSelectedTabPosition);
+    }
+
+    private void recycleTabView(View tabView) {
+        removeViewInLayout(tabView);
+        if (tabView instanceof PlaceholderView) {
+            mPlaceholderCount--;
+        } else {
+            mScrapViews.add(tabView);
+        }
+    }
+
+    private boolean updateIntrinsicWidth(View tabView, int position, int heightMeasureSpec) {
+        if (tabView instanceof PlaceholderView || mTabViewBinder.isTabTitlePending(position)) {
+            // Keep width of the tab if it's known, real view or title will be measured when it's
+            // attached
+            if (mIntrinsicWidths[position] > 0) {
+                return false;
+            }
+            mIntrinsicWidths[position] = mEstimatedTabWidth;
+            mIntrinsicWidthTitles[position] = null;
+            return true;
+        }
+
+        CharSequence title = mTabViewBinder.getTabTitle(position);
+        // Freshly bound custom view always requests layout, but restored width was measured with
+        // the same layout and title
+        if (mIntrinsicWidths[position] > 0
+                && TextUtils.equals(mIntrinsicWidthTitles[position], title)
+                && !(mCustomTabViews && tabView.isLayoutRequested() && !mIntrinsicWidthsRestored[position])) {
+            return false;
+        }
+
+        int width = -1;
+        TextView measuringTabView = getMeasuringTabView();
+        if (measuringTabView != null) {
+            width = TabWidthCache.measureWidth(title, measuringTabView);
+        }
+        if (width < 0) {
+            tabView.measure(MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED),
+                    getChildHeightMeasureSpec(tabView, heightMeasureSpec));
+            width = tabView.getMeasuredWidth() + getHorizontalMargins(tabView);
+        }
+        width = Math.max(1, width);
+        mIntrinsicWidthTitles[position] = title;
+        mIntrinsicWidthsRestored[position] = false;
+        if (mIntrinsicWidths[position] != width) {
+            mIntrinsicWidths[position] = width;
+            return true;
+        }
+        return false;
+    }
+
+    private void measureBoundTabs(int heightMeasureSpec) {
+        for (int i = 0; i < mBoundViews.size(); i++) {
+            View tabView = mBoundViews.get(i);
+            int position = mFirstBoundPosition + i;
+            int width = mTabRights[position] - mTabLefts[position] - getHorizontalMargins(tabView);
+            tabView.measure(MeasureSpec.makeMeasureSpec(Math.max(0, width), MeasureSpec.EXACTLY),
+                    getChildHeightMeasureSpec(tabView, heightMeasureSpec));
+        }
+    }
+
+    private void layoutBoundTabs() {
+        for (int i = 0; i < mBoundViews.size(); i++) {
+            View tabView = mBoundViews.get(i);
+            int left = mTabLefts[mFirstBoundPosition + i];
+            int top = getPaddingTop();
+            if (tabView.getLayoutParams() instanceof MarginLayoutParams) {
+                MarginLayoutParams layoutParams = (MarginLayoutParams) tabView.getLayoutParams();
+                left += layoutParams.leftMargin;
+                top += layoutParams.topMargin;
+            }
+            tabView.layout(left, top, left + tabView.getMeasuredWidth(), top + tabView.getMeasuredHeight());
+        }
+    }
+
+    private int getChildHeightMeasureSpec(View child, int heightMeasureSpec) {
+        int padding = getPaddingTop() + getPaddingBottom();
+        int height = child.getLayoutParams() != null ? child.getLayoutParams().height : LayoutParams.WRAP_CONTENT;
+        if (height < 0) {
+            height = MeasureSpec.getMode(heightMeasureSpec) == MeasureSpec.EXACTLY
+                    ? LayoutParams.MATCH_PARENT
+                    : LayoutParams.WRAP_CONTENT;
+        }
+        if (child.getLayoutParams() instanceof MarginLayoutParams) {
+            MarginLayoutParams layoutParams = (MarginLayoutParams) child.getLayoutParams();
+            padding += layoutParams.topMargin + layoutParams.bottomMargin;
+        }
+        return getChildMeasureSpec(heightMeasureSpec, padding, height);
+    }
+
+    private static int getHorizontalMargins(View child) {
+        if (child.getLayoutParams() instanceof MarginLayoutParams) {
+            MarginLayoutParams layoutParams = (MarginLayoutParams) child.getLayoutParams();
+            return layoutParams.leftMargin + layoutParams.rightMargin;
+        }
+        return 0;
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        if (!(getParent() instanceof SlidingTabLayout)) {
+            super.onLayout(changed, l, t, r, b);
+            return;
+        }
+
+        mMeasurePassesSinceLayout = 0;
+        mDividersDirty = true;
+        layoutBoundTabs();
+        if (mIndicatorView != null) {
+            int height = b - t;
+            mIndicatorView.layout(0, height - mIndicatorView.getMeasuredHeight(),
+                    mIndicatorView.getMeasuredWidth(), height);
+            updateIndicatorView();
+        }
+        if (mPendingScrollCorrection != 0) {
+            ((SlidingTabLayout) getParent()).scrollBy(mPendingScrollCorrection, 0);
+        }
+        mPendingScrollCorrection = 0;
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (!mDrawnTabsEnabled) {
+            return super.onTouchEvent(event);
+        }
+
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                mTouchedTabPosition = findTabAt((int) event.getX());
+                mTouchDownX = event.getX();
+                return mTouchedTabPosition >= 0;
+            case MotionEvent.ACTION_MOVE:
+                if (Math.abs(event.getX() - mTouchDownX) > mTouchSlop) {
+                    mTouchedTabPosition = -1;
+                }
+                return true;
+            case MotionEvent.ACTION_UP:
+                int position = mTouchedTabPosition;
+                mTouchedTabPosition = -1;
+                if (position >= 0 && position == findTabAt((int) event.getX())) {
+                    playSoundEffect(SoundEffectConstants.CLICK);
+                    performDrawnTabClick(position);
+                }
+                return true;
+            case MotionEvent.ACTION_CANCEL:
+                mTouchedTabPosition = -1;
+                return true;
+        }
+        return true;
+    }
+
+    private void performDrawnTabClick(int position) {
+        if (mOnTabClickListener != null) {
+            mOnTabClickListener.onTabClick(position);
+        }
+        mAccessibilityHelper.sendEventForVirtualView(position, AccessibilityEvent.TYPE_VIEW_CLICKED);
+    }
+
+    @Override
+    protected boolean dispatchHoverEvent(MotionEvent event) {
+        return (mAccessibilityHelper != null && mAccessibilityHelper.dispatchHoverEvent(event))
+                || super.dispatchHoverEvent(event);
+    }
+
+    private int findTabAt(int x) {
+        if (mTabCount == 0) {
+            return -1;
+        }
+        int position = findFirstTabAfter(x);
+        return x >= mTabLefts[position] && x < mTabRights[position] ? position : -1;
+    }
+
+    private void drawTabTitles(Canvas canvas, int height) {
+        TextView measuringTabView = getMeasuringTabView();
+        if (mTabCount == 0 || mDrawnTitlePaint == null || measuringTabView == null
+                || mDrawnTitles.length < mTabCount || !(getParent() instanceof SlidingTabLayout)) {
+            mFirstDrawnTab = 0;
+            mLastDrawnTab = -1;
+            return;
+        }
+
+        // Draw one viewport width beyond each edge, so short scrolls don't need a redraw
+        SlidingTabLayout tabLayout = (SlidingTabLayout) getParent();
+        int viewportWidth = tabLayout.getWidth();
+        mFirstDrawnTab = findFirstTabAfter(tabLayout.getScrollX() - viewportWidth);
+        mLastDrawnTab = findLastTabBefore(tabLayout.getScrollX() + 2 * viewportWidth);
+
+        int paddingLeft = measuringTabView.getCompoundPaddingLeft();
+        int padding = paddingLeft + measuringTabView.getCompoundPaddingRight();
+        float baseline = (height - mDrawnTitleFontMetrics.descent - mDrawnTitleFontMetrics.ascent) / 2f;
+        for (int position = mFirstDrawnTab; position <= mLastDrawnTab; position++) {
+            int slotWidth = mTabRights[position] - mTabLefts[position];
+            CharSequence title = mTabViewBinder.getTabTitle(position);
+            if (title == null) {
+                continue;
+            }
+            if (mDrawnTitleSlotWidths[position] != slotWidth
+                    || !TextUtils.equals(mDrawnTitleSources[position], title)) {
+                updateDrawnTitle(position, title, slotWidth - padding, measuringTabView);
+                mDrawnTitleSlotWidths[position] = slotWidth;
+            }
+
+            CharSequence text = mDrawnTitles[position];
+            float x = mTabLefts[position] + paddingLeft
+                    + (slotWidth - padding - mDrawnTitleWidths[position]) / 2f;
+            mDrawnTitlePaint.setColor(position == mSelectedTabPosition
+                    ? mDrawnSelectedTitleColor
+                    : mDrawnTitleColor);
+            canvas.drawText(text, 0, text.length(), x, baseline, mDrawnTitlePaint);
+        }
+    }
+
+    private void updateDrawnTitle(int position, CharSequence title, int availableWidth, TextView measuringTabView) {
+        CharSequence text = measuringTabView.getTransformationMethod() != null
+                ? measuringTabView.getTransformationMethod().getTransformation(title, measuringTabView)
+                : title;
+        float width = mDrawnTitlePaint.measureText(text, 0, text.length());
+        if (width > availableWidth) {
+            text = TextUtils.ellipsize(text, mDrawnTitlePaint, Math.max(0, availableWidth), TextUtils.TruncateAt.END);
+            width = mDrawnTitlePaint.measureText(text, 0, text.length());
+        }
+        mDrawnTitleSources[position] = title;
+        mDrawnTitles[position] = text;
+        mDrawnTitleWidths[position] = width;
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        int dividerHeightPx = (int) (Math.min(Math.max(0f, mDividerHeight), 1f) * h);
+        mDividerTop = (h - dividerHeightPx) / 2;
+        mDividerBottom = mDividerTop + dividerHeightPx;
+        mDividersDirty = true;
+    }
+
+    private void rebuildDividers() {
+        final SlidingTabLayout.TabColorizer tabColorizer = mCustomTabColorizer != null
+                ? mCustomTabColorizer
+                : mDefaultTabColorizer;
+        final int dividerCount = Math.max(0, mTabCount - 1);
+
+        // Count dividers of each color
+        mDividerBucketCount = 0;
+        for (int i = 0; i < dividerCount; i++) {
+            int bucket = findOrAddDividerBucket(tabColorizer.getDividerColor(i));
+            mDividerBucketSizes[bucket]++;
+        }
+
+        if (mDividerBucketLines.length < mDividerBucketCount) {
+            mDividerBucketLines = Arrays.copyOf(mDividerBucketLines, mDividerBucketCount);
+        }
+        for (int bucket = 0; bucket < mDividerBucketCount; bucket++) {
+            int length = mDividerBucketSizes[bucket] * 4;
+            if (mDividerBucketLines[bucket] == null || mDividerBucketLines[bucket].length < length) {
+                mDividerBucketLines[bucket] = new float[length];
+            }
+            mDividerBucketSizes[bucket] = 0;
+        }
+
+        // Dividers are added from left to right, so lines in each bucket are sorted by x
+        for (int i = 0; i < dividerCount; i++) {
+            int bucket = findOrAddDividerBucket(tabColorizer.getDividerColor(i));
+            float[] lines = mDividerBucketLines[bucket];
+            int offset = mDividerBucketSizes[bucket] * 4;
+            lines[offset] = mTabRights[i];
+            lines[offset + 1] = mDividerTop;
+            lines[offset + 2] = mTabRights[i];
+            lines[offset + 3] = mDividerBottom;
+            mDividerBucketSizes[bucket]++;
+        }
+        mDividersDirty = false;
+    }
+
+    private int findOrAddDividerBucket(int color) {
+        for (int bucket = 0; bucket < mDividerBucketCount; bucket++) {
+            if (mDividerBucketColors[bucket] == color) {
+                return bucket;
+            }
+        }
+
+        if (mDividerBucketColors.length == mDividerBucketCount) {
+            mDividerBucketColors = Arrays.copyOf(mDividerBucketColors, mDividerBucketCount * 2 + 1);
+            mDividerBucketSizes = Arrays.copyOf(mDividerBucketSizes, mDividerBucketCount * 2 + 1);
+        }
+        mDividerBucketColors[mDividerBucketCount] = color;
+        mDividerBucketSizes[mDividerBucketCount] = 0;
+        return mDividerBucketCount++;
+    }
+
+    private void drawDividers(Canvas canvas, int left, int right) {
+        if (mDividersDirty) {
+            rebuildDividers();
+        }
+
+        for (int bucket = 0; bucket < mDividerBucketCount; bucket++) {
+            float[] lines = mDividerBucketLines[bucket];
+            int size = mDividerBucketSizes[bucket];
+            int from = findFirstDividerLine(lines, size, left);
+            int to = findFirstDividerLine(lines, size, right + 1);
+            if (to > from) {
+                mDividerPaint.setColor(mDividerBucketColors[bucket]);
+                canvas.drawLines(lines, from * 4, (to - from) * 4, mDividerPaint);
+            }
+        }
+    }
+
+    /**
+     * @return index of the first line in {@code lines} with x greater or equal to {@code x}
+     */
+    private static int findFirstDividerLine(float[] lines, int size, int x) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (lines[mid * 4] < x) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        Tracing.beginSection(Tracing.DRAW);
+        final long startTime = mPerformanceMetrics != null ? System.nanoTime() : 0;
+        final int height = getHeight();
+        final int tabCount = getTabCount();
+
+        // Thick colored underline below the current selection
+        if (mIndicatorView == null && !mDragLayerActive) {
+            drawIndicator(canvas);
+        }
+
+        // Thin underline along the entire bottom edge
+        if (mBottomBorderThickness > 0) {
+            canvas.drawRect(0, height - mBottomBorderThickness, getWidth(), height, mBottomBorderPaint);
+        }
+
+        if (mDrawnTabsEnabled) {
+            drawTabTitles(canvas, height);
+        }
+
+        // Vertical separators between the titles, only visible ones in recycling and drawn modes
+        if (tabCount > 1) {
+            if (mDrawnTabsEnabled) {
+                drawDividers(canvas, mTabLefts[mFirstDrawnTab], mTabRights[Math.max(mFirstDrawnTab, mLastDrawnTab)]);
+            } else if (mRecyclingEnabled && !mBoundViews.isEmpty()) {
+                drawDividers(canvas, mTabLefts[mFirstBoundPosition],
+                        mTabRights[mFirstBoundPosition + mBoundViews.size() - 1]);
+            } else if (!mRecyclingEnabled) {
+                drawDividers(canvas, 0, getWidth());
+            }
+        }
+
+        if (mPerformanceMetrics != null) {
+            mPerformanceMetrics.onDraw(System.nanoTime() - startTime);
+        }
+        Tracing.endSection();
+    }
+
+    @Override
+    protected void dispatchDraw(Canvas canvas) {
+        super.dispatchDraw(canvas);
+        // Badges are drawn over tab views
+        drawBadges(canvas);
+    }
+
+    private void drawBadges(Canvas canvas) {
+        int lastPosition = Math.min(Math.min(mTabCount, mTabRights.length), mBadgeCounts.length) - 1;
+        if (mBadgedTabCount == 0 || lastPosition < 0) {
+            return;
+        }
+
+        canvas.getClipBounds(mBadgeClipBounds);
+        int first = findFirstTabAfter(mBadgeClipBounds.left);
+        int last = Math.min(lastPosition, findLastTabBefore(mBadgeClipBounds.right));
+        float radius = mBadgeHeight / 2f;
+        for (int position = first; position <= last; position++) {
+            int count = mBadgeCounts[position];
+            if (count <= 0) {
+                continue;
+            }
+
+            computeBadgeRect(position, mBadgeRect);
+            canvas.drawRoundRect(mBadgeRect, radius, radius, mBadgePaint);
+            canvas.drawText(getBadgeText(count), mBadgeRect.centerX(),
+                    mBadgeRect.centerY() + mBadgeTextBaselineOffset, mBadgeTextPaint);
+        }
+    }
+
+    private static String getBadgeText(int count) {
+        if (count > MAX_BADGE_COUNT) {
+            return MAX_BADGE_COUNT_EXCEEDED_TEXT;
+        }
+        String text = BADGE_TEXTS[count];
+        if (text == null) {
+            text = String.valueOf(count);
+            BADGE_TEXTS[count] = text;
+        }
+        return text;
+    }
+
+    /**
+     * Draws the selection indicator in coordinates of the strip.
+     */
+    void drawIndicator(Canvas canvas) {
+        updateIndicator();
+        if (mIndicator.right > mIndicator.left) {
+            final int height = getHeight();
+            mSelectedIndicatorPaint.setColor(mIndicatorColor);
+            canvas.drawRect(mIndicator.left, height - mSelectedIndicatorThickness, mIndicator.right,
+                    height, mSelectedIndicatorPaint);
+        }
+    }
+
+    /**
+     * Set the alpha value of the {@code color} to be the given {@code alpha} value.
+     */
+    private static int setColorAlpha(int color, byte alpha) {
+        return Color.argb(alpha, Color.red(color), Color.green(color), Color.blue(color));
+    }
+
+    /**
+     * Virtual view of a drawn tab has the id equal to tab position.
+     */
+    private class DrawnTabsAccessibilityHelper extends ExploreByTouchHelper {
+
+        private final Rect mBounds = new Rect();
+
+        DrawnTabsAccessibilityHelper() {
+            super(SlidingTabStrip.this);
+        }
+
+        @Override
+        protected int getVirtualViewAt(float x, float y) {
+            int position = findTabAt((int) x);
+            return position >= 0 ? position : INVALID_ID;
+        }
+
+        @Override
+        protected void getVisibleVirtualViews(List<Integer> virtualViewIds) {
+            // Only tabs drawn around the viewport are exposed
+            for (int position = mFirstDrawnTab; position <= Math.min(mLastDrawnTab, mTabCount - 1); position++) {
+                virtualViewIds.add(position);
+            }
+        }
+
+        @Override
+        protected void onPopulateEventForVirtualView(int virtualViewId, AccessibilityEvent event) {
+            event.setContentDescription(getTitle(virtualViewId));
+        }
+
+        @Override
+        protected void onPopulateNodeForVirtualView(int virtualViewId, AccessibilityNodeInfoCompat node) {
+            if (virtualViewId < mTabCount) {
+                mBounds.set(mTabLefts[virtualViewId], 0, mTabRights[virtualViewId], getHeight());
+            } else {
+                mBounds.set(0, 0, 0, 0);
+            }
+            node.setBoundsInParent(mBounds);
+            node.setText(getTitle(virtualViewId));
+            node.setClickable(true);
+            node.setSelected(virtualViewId == mSelectedTabPosition);
+            node.addAction(AccessibilityNodeInfoCompat.ACTION_CLICK);
+        }
+
+        @Override
+        protected boolean onPerformActionForVirtualView(int virtualViewId, int action, Bundle arguments) {
+            if (action == AccessibilityNodeInfoCompat.ACTION_CLICK && virtualViewId < mTabCount) {
+                performDrawnTabClick(virtualViewId);
+                return true;
+            }
+            return false;
+        }
+
+        private CharSequence getTitle(int position) {
+            CharSequence title = position < mTabCount ? mTabViewBinder.getTabTitle(position) : null;
+            return title != null ? title : "";
+        }
+    }
+
+    /**
+     * Empty view shown in place of a tab until its view is available.
+     */
+    private static class PlaceholderView extends View {
+        PlaceholderView(Context context) {
+            super(context);
+        }
     }
 
     private static class SimpleTabColorizer implements SlidingTabLayout.TabColorizer {
@@ -0,0 +1,153 @@
+package com.shaubert.ui.slidingtab;
+
+/**
+ * Layout and indicator math of the tab strip. Works only with primitive arrays and preallocated
+ * results, has no dependencies on Android classes and allocates nothing.
+ */
+final class TabLayoutEngine {
+
+    static final int STRETCH_IF_LESS_THAN_3 = 0;
+    static final int STRETCH_IF_POSSIBLE = 1;
+    static final int STRETCH_ALWAYS = 2;
+    static final int STRETCH_NONE = 3;
+
+    /**
+     * Bounds of the selection indicator.
+     */
+    static final class Indicator {
+        int left;
+        int right;
+    }
+
+    private TabLayoutEngine() {
+    }
+
+    /**
+     * Computes bounds of tabs from their intrinsic widths.
+     *
+     * @param intrinsicWidths widths of tabs, not positive values for unknown widths. Unknown widths
+     *                        are estimated as average of known ones or {@code estimatedWidth} if
+     *                        there are no known widths
+     * @param count number of tabs
+     * @param stretch one of {@code STRETCH_*} constants
+     * @param availableWidth width available for tabs
+     * @param start left of the first tab
+     * @param lefts receives lefts of tabs
+     * @param rights receives rights of tabs
+     * @return total width of tabs
+     */
+    static int computeTabBounds(int[] intrinsicWidths, int count, int estimatedWidth, int stretch,
+                                int availableWidth, int start, int[] lefts, int[] rights) {
+        int knownWidthsSum = 0;
+        int knownWidthsCount = 0;
+        for (int i = 0; i < count; i++) {
+            if (intrinsicWidths[i] > 0) {
+                knownWidthsSum += intrinsicWidths[i];
+                knownWidthsCount++;
+            }
+        }
+        if (knownWidthsCount > 0) {
+            estimatedWidth = knownWidthsSum / knownWidthsCount;
+        }
+
+        int totalWidth = 0;
+        int maxWidth = 0;
+        for (int i = 0; i < count; i++) {
+            int width = intrinsicWidths[i] > 0 ? intrinsicWidths[i] : estimatedWidth;
+            // Store widths in rights, they will be converted to bounds below
+            rights[i] = width;
+            totalWidth += width;
+            maxWidth = Math.max(maxWidth, width);
+        }
+
+        int fillWidth = count != 0 ? availableWidth / count : 0;
+        boolean fill = false;
+        int extraWidth = 0;
+        switch (stretch) {
+            case STRETCH_ALWAYS:
+                fill = true;
+                break;
+            case STRETCH_IF_LESS_THAN_3:
+                fill = count <= 3;
+                break;
+            case STRETCH_IF_POSSIBLE:
+                if (totalWidth < availableWidth) {
+                    if (maxWidth * count < availableWidth) {
+                        fill = true;
+                    } else {
+                        extraWidth = (availableWidth - totalWidth) / count;
+                    }
+                }
+                break;
+        }
+
+        int left = start;
+        for (int i = 0; i < count; i++) {
+            int width = fill ? fillWidth : rights[i] + extraWidth;
+            lefts[i] = left;
+            rights[i] = left + width;
+            left += width;
+        }
+        return left - start;
+    }
+
+    /**
+     * Computes bounds of the indicator partway between tab at {@code position} and the next one.
+     */
+    static void computeIndicator(int[] lefts, int[] rights, int count, int position, float offset,
+                                 Indicator out) {
+        if (count == 0 || position < 0 || position >= count) {
+            out.left = 0;
+            out.right = 0;
+            return;
+        }
+
+        int left = lefts[position];
+        int right = rights[position];
+        if (offset > 0f && position < count - 1) {
+            left = (int) (offset * lefts[position + 1] + (1.0f - offset) * left);
+            right = (int) (offset * rights[position + 1] + (1.0f - offset) * right);
+        }
+        out.left = left;
+        out.right = right;
+    }
+
+    /**
+     * Fills {@code gradient} with colors evenly blended from {@code fromColor} to {@code toColor}.
+     */
+    static void fillGradient(int fromColor, int toColor, int[] gradient) {
+        int steps = gradient.length - 1;
+        for (int i = 0; i <= steps; i++) {
+            gradient[i] = blendColors(fromColor, toColor, (i << 8) / steps);
+        }
+    }
+
+    /**
+     * Blend all four channels of {@code color1} and {@code color2} using the given fixed-point ratio.
+     *
+     * @param ratio of which to blend in range [0, 256]. 0 will return {@code color1}, 128 will give
+     *              an even blend, 256 will return {@code color2}.
+     */
+    static int blendColors(int color1, int color2, int ratio) {
+        final int inverseRatio = 256 - ratio;
+        int a = ((color1 >>> 24) * inverseRatio + (color2 >>> 24) * ratio) >> 8;
+        int r = (((color1 >> 16) & 0xff) * inverseRatio + ((color2 >> 16) & 0xff) * ratio) >> 8;
+        int g = (((color1 >> 8) & 0xff) * inverseRatio + ((color2 >> 8) & 0xff) * ratio) >> 8;
+        int b = ((color1 & 0xff) * inverseRatio + (color2 & 0xff) * ratio) >> 8;
+        return (a << 24) | (r << 16) | (g << 8) | b;
+    }
+
+    /**
+     * @return scroll x which shows tab at {@code tabIndex} scrolled by {@code positionOffset}
+     * pixels with {@code titleOffset} pixels before it
+     */
+    static int computeScrollTarget(int tabLeft, int tabIndex, int positionOffset, int titleOffset) {
+        int targetScrollX = tabLeft + positionOffset;
+        if (tabIndex > 0 || positionOffset > 0) {
+            // If we're not at the first child and are mid-scroll, make sure we obey the offset
+            targetScrollX -= titleOffset;
+        }
+        return targetScrollX;
+    }
+
+}
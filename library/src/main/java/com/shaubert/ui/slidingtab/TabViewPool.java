@@ -0,0 +1,206 @@
+package com.shaubert.ui.slidingtab;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+import android.view.View;
+
+import java.util.ArrayList;
+
+/**
+ * Pool of custom tab views keyed by tab layout resource id. One pool can be shared between
+ * several {@link SlidingTabLayout}s with {@link SlidingTabLayout#setTabViewPool(TabViewPool)},
+ * views removed from one layout are reused by others instead of being inflated again.
+ * <p>
+ * Views are reused only within the same {@link Context}, so tab layouts of a recreated fragment
+ * get views back from the pool if it's kept by the activity. Pool keeps views of a single context,
+ * views of another context are dropped when a view is released. Layouts drop views of their
+ * context from the pool when they are detached from a finishing activity. Views are released from
+ * a layout on adapter shrinking, {@link SlidingTabLayout#setCustomTabView(int, int)} and
+ * {@link SlidingTabLayout#setViewPager(android.support.v4.view.ViewPager)} with {@code null}.
+ * <p>
+ * Pool registers itself for memory callbacks of application while it holds views and evicts views
+ * on {@link ComponentCallbacks2#onTrimMemory(int)}. Call {@link #destroy()} when the pool isn't
+ * needed anymore, e.g. from {@code onDestroy()} of its activity. All methods must be called on the
+ * main thread.
+ */
+public class TabViewPool implements ComponentCallbacks2 {
+
+    public static final int DEFAULT_MAX_VIEWS_PER_TYPE = 16;
+
+    private final SparseArray<ArrayList<View>> mViews = new SparseArray<>();
+    private final SparseIntArray mMaxViews = new SparseIntArray();
+    private final Context mAppContext;
+    private boolean mCallbacksRegistered;
+    private boolean mDestroyed;
+
+    public TabViewPool(Context context) {
+        mAppContext = context.getApplicationContext();
+    }
+
+    /**
+     * Sets maximum count of pooled views inflated from {@code layoutResId}.
+     * {@link #DEFAULT_MAX_VIEWS_PER_TYPE} by default.
+     */
+    public void setMaxViews(int layoutResId, int maxViews) {
+        mMaxViews.put(layoutResId, maxViews);
+        ArrayList<View> views = mViews.get(layoutResId);
+        if (views != null) {
+            trim(views, maxViews);
+            onSizeChanged();
+        }
+    }
+
+    public int getMaxViews(int layoutResId) {
+        return mMaxViews.get(layoutResId, DEFAULT_MAX_VIEWS_PER_TYPE);
+    }
+
+    /**
+     * @return pooled view inflated from {@code layoutResId} with the given {@code context} or null
+     * if there is no such view. Views of other contexts are dropped as their contexts might be
+     * destroyed.
+     */
+    public View acquire(Context context, int layoutResId) {
+        ArrayList<View> views = mViews.get(layoutResId);
+        while (views != null && !views.isEmpty()) {
+            View view = views.remove(views.size() - 1);
+            if (view.getContext() == context) {
+                onSizeChanged();
+                return view;
+            }
+        }
+        onSizeChanged();
+        return null;
+    }
+
+    /**
+     * Puts detached {@code view} inflated from {@code layoutResId} into the pool. Pooled views of
+     * other contexts are dropped. Does nothing if the pool is destroyed.
+     */
+    public void release(int layoutResId, View view) {
+        if (view.getParent() != null) {
+            throw new IllegalArgumentException("view must be detached before release");
+        }
+        if (mDestroyed) {
+            return;
+        }
+
+        dropViewsOfOtherContexts(view.getContext());
+        ArrayList<View> views = mViews.get(layoutResId);
+        if (views == null) {
+            views = new ArrayList<>();
+            mViews.put(layoutResId, views);
+        }
+        if (views.size() < getMaxViews(layoutResId)) {
+            view.setOnClickListener(null);
+            view.setSelected(false);
+            view.setTag(R.id.stl_tab_position, null);
+            views.add(view);
+        }
+        onSizeChanged();
+    }
+
+    /**
+     * @return total number of pooled views of all types
+     */
+    public int getSize() {
+        int size = 0;
+        for (int i = 0; i < mViews.size(); i++) {
+            size += mViews.valueAt(i).size();
+        }
+        return size;
+    }
+
+    public void clear() {
+        mViews.clear();
+        onSizeChanged();
+    }
+
+    /**
+     * Drops pooled views of {@code context}. Called by {@link SlidingTabLayout} when its activity
+     * is finishing.
+     */
+    public void clear(Context context) {
+        for (int i = 0; i < mViews.size(); i++) {
+            ArrayList<View> views = mViews.valueAt(i);
+            for (int j = views.size() - 1; j >= 0; j--) {
+                if (views.get(j).getContext() == context) {
+                    views.remove(j);
+                }
+            }
+        }
+        onSizeChanged();
+    }
+
+    /**
+     * Drops pooled views and unregisters memory callbacks. Views released after that aren't pooled.
+     */
+    public void destroy() {
+        mDestroyed = true;
+        clear();
+    }
+
+    public boolean isDestroyed() {
+        return mDestroyed;
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_RUNNING_CRITICAL) {
+            clear();
+        } else if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            for (int i = 0; i < mViews.size(); i++) {
+                ArrayList<View> views = mViews.valueAt(i);
+                trim(views, views.size() / 2);
+            }
+            onSizeChanged();
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        clear();
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+        // Pooled views were inflated with resources of previous configuration
+        clear();
+    }
+
+    private void dropViewsOfOtherContexts(Context context) {
+        for (int i = 0; i < mViews.size(); i++) {
+            ArrayList<View> views = mViews.valueAt(i);
+            for (int j = views.size() - 1; j >= 0; j--) {
+                if (views.get(j).getContext() != context) {
+                    views.remove(j);
+                }
+            }
+        }
+    }
+
+    /**
+     * Updates size counter and keeps memory callbacks registered only while there are pooled
+     * views, so an empty pool isn't referenced by the application.
+     */
+    private void onSizeChanged() {
+        int size = getSize();
+        Tracing.setCounter(Tracing.COUNTER_POOL_SIZE, size);
+        if (size > 0 && !mCallbacksRegistered) {
+            mAppContext.registerComponentCallbacks(this);
+            mCallbacksRegistered = true;
+        } else if (size == 0 && mCallbacksRegistered) {
+            mAppContext.unregisterComponentCallbacks(this);
+            mCallbacksRegistered = false;
+        }
+    }
+
+    private static void trim(ArrayList<View> views, int size) {
+        while (views.size() > Math.max(0, size)) {
+            views.remove(views.size() - 1);
+        }
+    }
+
+}
@@ -0,0 +1,197 @@
+package com.shaubert.ui.slidingtab;
+
+import android.annotation.SuppressLint;
+import android.graphics.Typeface;
+import android.os.AsyncTask;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Layout;
+import android.text.Spanned;
+import android.text.TextPaint;
+import android.text.method.TransformationMethod;
+import android.text.style.MetricAffectingSpan;
+import android.util.LruCache;
+import android.widget.TextView;
+
+import java.util.Locale;
+
+/**
+ * Process-wide LRU cache of widths of single line text tabs. Widths are computed from text with
+ * {@link Layout#getDesiredWidth(CharSequence, TextPaint)} the same way {@link TextView} does it
+ * for a single line of text, so a tab doesn't have to be measured to know its width.
+ * <p>
+ * Entries are keyed by title, transformation, typeface, text size, letter spacing, text locale and
+ * horizontal paddings. Titles with spans aren't cached as spans might change the width, and titles
+ * with spans affecting metrics aren't measured at all, they have to be measured by the view.
+ */
+class TabWidthCache {
+
+    private static final int MAX_SIZE = 512;
+
+    private static final LruCache<Key, Integer> CACHE = new LruCache<>(MAX_SIZE);
+    private static final Key LOOKUP_KEY = new Key();
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+
+    /**
+     * @return true if width of {@code title} depends only on its text
+     */
+    static boolean isCacheable(CharSequence title) {
+        return title != null && !(title instanceof Spanned);
+    }
+
+    /**
+     * @return cached width of {@code title} in {@code tabView} or -1 if it's unknown
+     */
+    static int getWidth(CharSequence title, TextView tabView) {
+        if (!isCacheable(title)) {
+            return -1;
+        }
+
+        Integer width;
+        synchronized (LOOKUP_KEY) {
+            LOOKUP_KEY.set(title, tabView);
+            width = CACHE.get(LOOKUP_KEY);
+        }
+        return width != null ? width : -1;
+    }
+
+    /**
+     * @return true if {@code title} has spans changing its size, like
+     * {@link android.text.style.RelativeSizeSpan} or {@link android.text.style.ReplacementSpan}
+     */
+    static boolean hasMetricAffectingSpans(CharSequence title) {
+        // ReplacementSpan is a MetricAffectingSpan too
+        return title instanceof Spanned
+                && ((Spanned) title).getSpans(0, title.length(), MetricAffectingSpan.class).length > 0;
+    }
+
+    /**
+     * @return width of {@code title} in {@code tabView}, from cache if possible, or -1 if the title
+     * has spans affecting metrics and has to be measured by the view
+     */
+    static int measureWidth(CharSequence title, TextView tabView) {
+        if (hasMetricAffectingSpans(title)) {
+            return -1;
+        }
+        if (!isCacheable(title)) {
+            return computeWidth(title != null ? title : "", tabView.getTransformationMethod(), tabView.getPaint(),
+                    tabView.getCompoundPaddingLeft() + tabView.getCompoundPaddingRight(), tabView);
+        }
+
+        int width = getWidth(title, tabView);
+        if (width < 0) {
+            Key key = new Key();
+            key.set(title, tabView);
+            width = computeWidth(title, tabView.getTransformationMethod(), tabView.getPaint(), key.padding, tabView);
+            CACHE.put(key, width);
+        }
+        return width;
+    }
+
+    /**
+     * Computes widths of {@code titles} in background and stores them in cache.
+     *
+     * @param onComplete called on the main thread after all widths have been computed
+     */
+    static void precompute(final CharSequence[] titles, final TextView tabView, final Runnable onComplete) {
+        final Key[] keys = new Key[titles.length];
+        // Transformation reads state of the view, like text locale, so it's applied on the main
+        // thread and only text layout is done in background
+        final CharSequence[] texts = new CharSequence[titles.length];
+        for (int i = 0; i < titles.length; i++) {
+            if (isCacheable(titles[i])) {
+                keys[i] = new Key();
+                keys[i].set(titles[i], tabView);
+                texts[i] = transform(titles[i], tabView.getTransformationMethod(), tabView);
+            }
+        }
+        // Paint is not thread safe, so background thread gets its own copy
+        final TextPaint paint = new TextPaint(tabView.getPaint());
+
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < titles.length; i++) {
+                    if (keys[i] != null && CACHE.get(keys[i]) == null) {
+                        CACHE.put(keys[i], computeTextWidth(texts[i], paint, keys[i].padding));
+                    }
+                }
+                MAIN_HANDLER.post(onComplete);
+            }
+        });
+    }
+
+    private static int computeWidth(CharSequence title, TransformationMethod transformation,
+                                    TextPaint paint, int padding, TextView tabView) {
+        return computeTextWidth(transform(title, transformation, tabView), paint, padding);
+    }
+
+    private static CharSequence transform(CharSequence title, TransformationMethod transformation, TextView tabView) {
+        return transformation != null ? transformation.getTransformation(title, tabView) : title;
+    }
+
+    private static int computeTextWidth(CharSequence text, TextPaint paint, int padding) {
+        return (int) Math.ceil(Layout.getDesiredWidth(text, paint)) + padding;
+    }
+
+    private static class Key {
+        private String text;
+        private Class<?> transformation;
+        private Typeface typeface;
+        private float textSize;
+        private float textScaleX;
+        private int paintFlags;
+        private float letterSpacing;
+        private Locale textLocale;
+        private int padding;
+
+        @SuppressLint("NewApi")
+        void set(CharSequence title, TextView tabView) {
+            TextPaint paint = tabView.getPaint();
+            text = title.toString();
+            transformation = tabView.getTransformationMethod() != null
+                    ? tabView.getTransformationMethod().getClass()
+                    : null;
+            typeface = paint.getTypeface();
+            textSize = paint.getTextSize();
+            textScaleX = paint.getTextScaleX();
+            paintFlags = paint.getFlags();
+            letterSpacing = Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP ? paint.getLetterSpacing() : 0f;
+            textLocale = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1 ? paint.getTextLocale() : null;
+            padding = tabView.getCompoundPaddingLeft() + tabView.getCompoundPaddingRight();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+
+            Key key = (Key) o;
+            return Float.compare(key.textSize, textSize) == 0
+                    && Float.compare(key.textScaleX, textScaleX) == 0
+                    && Float.compare(key.letterSpacing, letterSpacing) == 0
+                    && paintFlags == key.paintFlags
+                    && padding == key.padding
+                    && text.equals(key.text)
+                    && transformation == key.transformation
+                    && (typeface != null ? typeface.equals(key.typeface) : key.typeface == null)
+                    && (textLocale != null ? textLocale.equals(key.textLocale) : key.textLocale == null);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = text.hashCode();
+            result = 31 * result + (transformation != null ? transformation.hashCode() : 0);
+            result = 31 * result + (typeface != null ? typeface.hashCode() : 0);
+            result = 31 * result + Float.floatToIntBits(textSize);
+            result = 31 * result + Float.floatToIntBits(textScaleX);
+            result = 31 * result + paintFlags;
+            result = 31 * result + Float.floatToIntBits(letterSpacing);
+            result = 31 * result + (textLocale != null ? textLocale.hashCode() : 0);
+            result = 31 * result + padding;
+            return result;
+        }
+    }
+
+}
@@ -0,0 +1,98 @@
+package com.shaubert.ui.slidingtab;
+
+import android.os.Build;
+import android.support.v4.os.TraceCompat;
+
+import java.lang.reflect.Method;
+
+/**
+ * Trace sections and counters of the tab layout, visible in systrace and Perfetto. Disabled by
+ * default, see {@link SlidingTabLayout#setTracingEnabled(boolean)}. Section labels are
+ * precomputed, so sections don't allocate.
+ */
+class Tracing {
+
+    static final String NOTIFY_DATA_SET_CHANGED = "STL:notifyDataSetChanged";
+    static final String INFLATE_TAB_VIEW = "STL:inflateTabView";
+    static final String CREATE_DEFAULT_TAB_VIEW = "STL:createDefaultTabView";
+    static final String DRAW = "STL:onDraw";
+    static final String SCROLL_TO_TAB = "STL:scrollToTab";
+
+    static final String COUNTER_TAB_COUNT = "STL:tabCount";
+    static final String COUNTER_POOL_SIZE = "STL:poolSize";
+
+    // Measure passes after the last layout are labelled with numbers up to this one
+    private static final int MAX_MEASURE_PASS_LABEL = 3;
+    private static final String[][] MEASURE_LABELS;
+
+    static {
+        SlidingTabLayout.StretchOption[] stretchOptions = SlidingTabLayout.StretchOption.values();
+        MEASURE_LABELS = new String[stretchOptions.length][MAX_MEASURE_PASS_LABEL];
+        for (SlidingTabLayout.StretchOption stretchOption : stretchOptions) {
+            for (int pass = 1; pass <= MAX_MEASURE_PASS_LABEL; pass++) {
+                MEASURE_LABELS[stretchOption.ordinal()][pass - 1] = "STL:onMeasure[" + stretchOption.name() + "]#"
+                        + pass + (pass == MAX_MEASURE_PASS_LABEL ? "+" : "");
+            }
+        }
+    }
+
+    private static boolean sEnabled;
+    private static Method sSetCounterMethod;
+    private static boolean sSetCounterMethodResolved;
+
+    static void setEnabled(boolean enabled) {
+        sEnabled = enabled;
+    }
+
+    static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    static void beginSection(String label) {
+        if (sEnabled) {
+            TraceCompat.beginSection(label);
+        }
+    }
+
+    /**
+     * Begins section of tab strip measure pass.
+     *
+     * @param pass number of measure pass since the last layout, starting from 1
+     */
+    static void beginMeasureSection(SlidingTabLayout.StretchOption stretchOption, int pass) {
+        if (sEnabled) {
+            TraceCompat.beginSection(MEASURE_LABELS[stretchOption.ordinal()][Math.min(pass, MAX_MEASURE_PASS_LABEL) - 1]);
+        }
+    }
+
+    static void endSection() {
+        if (sEnabled) {
+            TraceCompat.endSection();
+        }
+    }
+
+    /**
+     * Sets value of counter track. Counters are supported only on API 29 and higher,
+     * {@code Trace.setCounter} is called with reflection as it's not available in compile SDK.
+     */
+    static void setCounter(String counterName, long value) {
+        if (!sEnabled || Build.VERSION.SDK_INT < 29) {
+            return;
+        }
+
+        if (!sSetCounterMethodResolved) {
+            sSetCounterMethodResolved = true;
+            try {
+                sSetCounterMethod = Class.forName("android.os.Trace").getMethod("setCounter", String.class, long.class);
+            } catch (Exception ignored) {
+            }
+        }
+        if (sSetCounterMethod != null) {
+            try {
+                sSetCounterMethod.invoke(null, counterName, value);
+            } catch (Exception ignored) {
+            }
+        }
+    }
+
+}
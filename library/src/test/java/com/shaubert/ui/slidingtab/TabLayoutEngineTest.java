@@ -0,0 +1,225 @@
+package com.shaubert.ui.slidingtab;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class TabLayoutEngineTest {
+
+    private static final int START = 10;
+
+    private final int[] lefts = new int[16];
+    private final int[] rights = new int[16];
+
+    @Test
+    public void stretchNoneKeepsIntrinsicWidths() {
+        int total = computeBounds(new int[] {100, 200, 50}, TabLayoutEngine.STRETCH_NONE, 1000);
+
+        assertBounds(new int[] {10, 110, 310}, new int[] {110, 310, 360}, 3);
+        assertEquals(350, total);
+    }
+
+    @Test
+    public void unknownWidthsAreAverageOfKnownOnes() {
+        int total = computeBounds(new int[] {100, 0, 200, -1}, TabLayoutEngine.STRETCH_NONE, 1000);
+
+        assertBounds(new int[] {10, 110, 260, 460}, new int[] {110, 260, 460, 610}, 4);
+        assertEquals(600, total);
+    }
+
+    @Test
+    public void unknownWidthsAreEstimatedWithoutKnownOnes() {
+        int total = TabLayoutEngine.computeTabBounds(new int[] {0, 0}, 2, 96, TabLayoutEngine.STRETCH_NONE,
+                1000, START, lefts, rights);
+
+        assertBounds(new int[] {10, 106}, new int[] {106, 202}, 2);
+        assertEquals(192, total);
+    }
+
+    @Test
+    public void stretchAlwaysFillsAvailableWidth() {
+        int total = computeBounds(new int[] {300, 100, 50, 10}, TabLayoutEngine.STRETCH_ALWAYS, 900);
+
+        assertBounds(new int[] {10, 235, 460, 685}, new int[] {235, 460, 685, 910}, 4);
+        assertEquals(900, total);
+    }
+
+    @Test
+    public void stretchAlwaysSqueezesTabs() {
+        int total = computeBounds(new int[] {300, 300}, TabLayoutEngine.STRETCH_ALWAYS, 400);
+
+        assertBounds(new int[] {10, 210}, new int[] {210, 410}, 2);
+        assertEquals(400, total);
+    }
+
+    @Test
+    public void stretchIfLessThan3FillsUpTo3Tabs() {
+        int total = computeBounds(new int[] {100, 200, 50}, TabLayoutEngine.STRETCH_IF_LESS_THAN_3, 900);
+
+        assertBounds(new int[] {10, 310, 610}, new int[] {310, 610, 910}, 3);
+        assertEquals(900, total);
+    }
+
+    @Test
+    public void stretchIfLessThan3KeepsWidthsOf4Tabs() {
+        int total = computeBounds(new int[] {100, 200, 50, 50}, TabLayoutEngine.STRETCH_IF_LESS_THAN_3, 900);
+
+        assertBounds(new int[] {10, 110, 310, 360}, new int[] {110, 310, 360, 410}, 4);
+        assertEquals(400, total);
+    }
+
+    @Test
+    public void stretchIfPossibleFillsWhenWidestTabFits() {
+        int total = computeBounds(new int[] {100, 200}, TabLayoutEngine.STRETCH_IF_POSSIBLE, 500);
+
+        assertBounds(new int[] {10, 260}, new int[] {260, 510}, 2);
+        assertEquals(500, total);
+    }
+
+    @Test
+    public void stretchIfPossibleDistributesExtraWidth() {
+        int total = computeBounds(new int[] {100, 300}, TabLayoutEngine.STRETCH_IF_POSSIBLE, 500);
+
+        assertBounds(new int[] {10, 160}, new int[] {160, 510}, 2);
+        assertEquals(500, total);
+    }
+
+    @Test
+    public void stretchIfPossibleKeepsWidthsWhenTabsDontFit() {
+        int total = computeBounds(new int[] {300, 300}, TabLayoutEngine.STRETCH_IF_POSSIBLE, 500);
+
+        assertBounds(new int[] {10, 310}, new int[] {310, 610}, 2);
+        assertEquals(600, total);
+    }
+
+    @Test
+    public void noTabs() {
+        assertEquals(0, computeBounds(new int[0], TabLayoutEngine.STRETCH_ALWAYS, 500));
+    }
+
+    @Test
+    public void boundsAreAdjacent() {
+        Random random = new Random(42);
+        int[] stretches = {TabLayoutEngine.STRETCH_IF_LESS_THAN_3, TabLayoutEngine.STRETCH_IF_POSSIBLE,
+                TabLayoutEngine.STRETCH_ALWAYS, TabLayoutEngine.STRETCH_NONE};
+        for (int attempt = 0; attempt < 1000; attempt++) {
+            int count = random.nextInt(lefts.length + 1);
+            int[] widths = new int[count];
+            for (int i = 0; i < count; i++) {
+                widths[i] = random.nextInt(300) - 50;
+            }
+            int stretch = stretches[random.nextInt(stretches.length)];
+            int availableWidth = random.nextInt(2000);
+
+            int total = computeBounds(widths, stretch, availableWidth);
+
+            int left = START;
+            for (int i = 0; i < count; i++) {
+                assertEquals(left, lefts[i]);
+                left = rights[i];
+            }
+            assertEquals(left - START, total);
+        }
+    }
+
+    @Test
+    public void indicatorOfSettledTab() {
+        TabLayoutEngine.Indicator indicator = computeIndicator(1, 0f);
+
+        assertEquals(100, indicator.left);
+        assertEquals(300, indicator.right);
+    }
+
+    @Test
+    public void indicatorBetweenTabs() {
+        TabLayoutEngine.Indicator indicator = computeIndicator(0, 0.5f);
+
+        assertEquals(50, indicator.left);
+        assertEquals(200, indicator.right);
+    }
+
+    @Test
+    public void indicatorOfLastTabDoesntMoveFurther() {
+        TabLayoutEngine.Indicator indicator = computeIndicator(2, 0.5f);
+
+        assertEquals(300, indicator.left);
+        assertEquals(350, indicator.right);
+    }
+
+    @Test
+    public void indicatorOutOfRangeIsEmpty() {
+        assertIndicatorEmpty(computeIndicator(-1, 0f));
+        assertIndicatorEmpty(computeIndicator(3, 0f));
+
+        TabLayoutEngine.Indicator indicator = new TabLayoutEngine.Indicator();
+        indicator.left = 1;
+        indicator.right = 2;
+        TabLayoutEngine.computeIndicator(lefts, rights, 0, 0, 0f, indicator);
+        assertIndicatorEmpty(indicator);
+    }
+
+    @Test
+    public void blendColorsEndpoints() {
+        int color1 = 0xff102030;
+        int color2 = 0x00f0e0d0;
+
+        assertEquals(color1, TabLayoutEngine.blendColors(color1, color2, 0));
+        assertEquals(color2, TabLayoutEngine.blendColors(color1, color2, 256));
+        assertEquals(0x80000000, TabLayoutEngine.blendColors(0x80000000, 0x80000000, 128));
+        assertEquals(0x7f7f7f7f, TabLayoutEngine.blendColors(0xffffffff, 0x00000000, 128));
+    }
+
+    @Test
+    public void gradientStartsAndEndsWithColors() {
+        int[] gradient = new int[5];
+
+        TabLayoutEngine.fillGradient(0xffff0000, 0x000000ff, gradient);
+
+        assertEquals(0xffff0000, gradient[0]);
+        assertEquals(0x7f7f007f, gradient[2]);
+        assertEquals(0x000000ff, gradient[4]);
+    }
+
+    @Test
+    public void scrollTargetOfFirstTabIgnoresTitleOffset() {
+        assertEquals(0, TabLayoutEngine.computeScrollTarget(0, 0, 0, 24));
+    }
+
+    @Test
+    public void scrollTargetKeepsTitleOffset() {
+        assertEquals(76, TabLayoutEngine.computeScrollTarget(100, 1, 0, 24));
+        assertEquals(16, TabLayoutEngine.computeScrollTarget(0, 0, 40, 24));
+        assertEquals(116, TabLayoutEngine.computeScrollTarget(100, 1, 40, 24));
+    }
+
+    private int computeBounds(int[] widths, int stretch, int availableWidth) {
+        return TabLayoutEngine.computeTabBounds(widths, widths.length, 96, stretch, availableWidth, START,
+                lefts, rights);
+    }
+
+    private void assertBounds(int[] expectedLefts, int[] expectedRights, int count) {
+        int[] actualLefts = new int[count];
+        int[] actualRights = new int[count];
+        System.arraycopy(lefts, 0, actualLefts, 0, count);
+        System.arraycopy(rights, 0, actualRights, 0, count);
+        assertArrayEquals(expectedLefts, actualLefts);
+        assertArrayEquals(expectedRights, actualRights);
+    }
+
+    private static TabLayoutEngine.Indicator computeIndicator(int position, float offset) {
+        int[] tabLefts = {0, 100, 300};
+        int[] tabRights = {100, 300, 350};
+        TabLayoutEngine.Indicator indicator = new TabLayoutEngine.Indicator();
+        TabLayoutEngine.computeIndicator(tabLefts, tabRights, 3, position, offset, indicator);
+        return indicator;
+    }
+
+    private static void assertIndicatorEmpty(TabLayoutEngine.Indicator indicator) {
+        assertEquals(0, indicator.left);
+        assertEquals(0, indicator.right);
+    }
+
+}
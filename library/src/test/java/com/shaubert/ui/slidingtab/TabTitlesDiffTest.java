@@ -0,0 +1,172 @@
+package com.shaubert.ui.slidingtab;
+
+import android.app.Activity;
+import android.support.v4.view.PagerAdapter;
+import android.support.v4.view.ViewPager;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Checks that on adapter change only tabs with changed titles are rebound, inserted or removed
+ * and tabs with equal titles at the start and at the end are kept.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class TabTitlesDiffTest {
+
+    private TitlesAdapter adapter;
+    private SlidingTabStrip tabStrip;
+
+    @Before
+    public void setUp() {
+        Activity activity = Robolectric.buildActivity(Activity.class).create().start().resume().visible().get();
+        LinearLayout root = new LinearLayout(activity);
+        root.setOrientation(LinearLayout.VERTICAL);
+        SlidingTabLayout tabLayout = new SlidingTabLayout(activity);
+        root.addView(tabLayout);
+        ViewPager viewPager = new ViewPager(activity);
+        root.addView(viewPager);
+        activity.setContentView(root);
+
+        adapter = new TitlesAdapter("A", "B", "C", "D", "E");
+        viewPager.setAdapter(adapter);
+        tabLayout.setViewPager(viewPager);
+        tabStrip = (SlidingTabStrip) tabLayout.getChildAt(0);
+    }
+
+    @Test
+    public void replace() {
+        View[] oldViews = getTabViews();
+
+        adapter.setTitles("A", "B", "X", "D", "E");
+
+        assertTitles("A", "B", "X", "D", "E");
+        View[] views = getTabViews();
+        assertSame(oldViews[0], views[0]);
+        assertSame(oldViews[1], views[1]);
+        assertSame(oldViews[3], views[3]);
+        assertSame(oldViews[4], views[4]);
+    }
+
+    @Test
+    public void insert() {
+        View[] oldViews = getTabViews();
+
+        adapter.setTitles("A", "B", "X", "Y", "C", "D", "E");
+
+        assertTitles("A", "B", "X", "Y", "C", "D", "E");
+        View[] views = getTabViews();
+        assertSame(oldViews[0], views[0]);
+        assertSame(oldViews[1], views[1]);
+        assertSame(oldViews[2], views[4]);
+        assertSame(oldViews[3], views[5]);
+        assertSame(oldViews[4], views[6]);
+        assertNotSame(oldViews[2], views[2]);
+        assertNotSame(oldViews[2], views[3]);
+    }
+
+    @Test
+    public void remove() {
+        View[] oldViews = getTabViews();
+
+        adapter.setTitles("A", "D", "E");
+
+        assertTitles("A", "D", "E");
+        View[] views = getTabViews();
+        assertSame(oldViews[0], views[0]);
+        assertSame(oldViews[3], views[1]);
+        assertSame(oldViews[4], views[2]);
+    }
+
+    @Test
+    public void insertAndReplace() {
+        adapter.setTitles("X", "A", "B", "C", "D", "Y");
+
+        assertTitles("X", "A", "B", "C", "D", "Y");
+    }
+
+    @Test
+    public void removeAll() {
+        adapter.setTitles();
+
+        assertTitles();
+    }
+
+    private View[] getTabViews() {
+        View[] views = new View[tabStrip.getTabCount()];
+        for (int i = 0; i < views.length; i++) {
+            views[i] = tabStrip.getChildAt(i);
+        }
+        return views;
+    }
+
+    private void assertTitles(String... titles) {
+        assertEquals(titles.length, tabStrip.getTabCount());
+        for (int i = 0; i < titles.length; i++) {
+            assertEquals(titles[i], ((TextView) tabStrip.getChildAt(i)).getText().toString());
+        }
+    }
+
+    private static class TitlesAdapter extends PagerAdapter {
+        private final List<String> titles = new ArrayList<>();
+
+        TitlesAdapter(String... titles) {
+            this.titles.addAll(Arrays.asList(titles));
+        }
+
+        void setTitles(String... titles) {
+            this.titles.clear();
+            this.titles.addAll(Arrays.asList(titles));
+            notifyDataSetChanged();
+        }
+
+        @Override
+        public int getCount() {
+            return titles.size();
+        }
+
+        @Override
+        public CharSequence getPageTitle(int position) {
+            return titles.get(position);
+        }
+
+        @Override
+        public Object instantiateItem(ViewGroup container, int position) {
+            View view = new View(container.getContext());
+            container.addView(view);
+            return view;
+        }
+
+        @Override
+        public void destroyItem(ViewGroup container, int position, Object object) {
+            container.removeView((View) object);
+        }
+
+        @Override
+        public int getItemPosition(Object object) {
+            return POSITION_NONE;
+        }
+
+        @Override
+        public boolean isViewFromObject(View view, Object object) {
+            return view == object;
+        }
+    }
+
+}